@@ -0,0 +1,119 @@
+package com.beardfish.heap.bench;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.beardfish.heap.IndexedMinPriorityQueue;
+import com.beardfish.heap.MinPriorityQueue;
+import com.beardfish.heap.PairingHeap;
+
+/**
+ * Lowering the key of an arbitrary queued entry. PriorityQueue has no
+ * decreaseKey, so it removes and re-offers the entry as callers have to.
+ *
+ * @author Christian
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecreaseKeyBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    public int size;
+
+    @Param({"MinPriorityQueue", "IndexedMinPriorityQueue", "PairingHeap", "PriorityQueue"})
+    public String implementation;
+
+    /**
+     * A mutable key, equal only to itself
+     */
+    static final class Entry implements Comparable<Entry> {
+
+        long key;
+
+        Entry(long key) {
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            return Long.compare(this.key, o.key);
+        }
+    }
+
+    private Entry[] entries;
+    private PairingHeap.Node<Entry>[] nodes;
+    private MinPriorityQueue<Entry> minPriorityQueue;
+    private IndexedMinPriorityQueue<Long> indexed;
+    private PairingHeap<Entry> pairingHeap;
+    private PriorityQueue<Entry> priorityQueue;
+    private Random random;
+
+    @Setup(Level.Iteration)
+    @SuppressWarnings("unchecked")
+    public void fill() {
+        Random keys = new Random(29);
+        this.entries = new Entry[this.size];
+        this.nodes = (PairingHeap.Node<Entry>[]) new PairingHeap.Node<?>[this.size];
+        this.minPriorityQueue = null;
+        this.indexed = null;
+        this.pairingHeap = null;
+        this.priorityQueue = null;
+        if("MinPriorityQueue".equals(this.implementation)) {
+            this.minPriorityQueue = new MinPriorityQueue<Entry>(this.size);
+        } else if("IndexedMinPriorityQueue".equals(this.implementation)) {
+            this.indexed = new IndexedMinPriorityQueue<Long>(this.size);
+        } else if("PairingHeap".equals(this.implementation)) {
+            this.pairingHeap = new PairingHeap<Entry>();
+        } else if("PriorityQueue".equals(this.implementation)) {
+            this.priorityQueue = new PriorityQueue<Entry>(this.size);
+        } else {
+            throw new IllegalArgumentException(this.implementation);
+        }
+        for(int i = 0; i < this.size; i++) {
+            /* keys start high so they can be lowered many times */
+            Entry entry = this.entries[i] = new Entry(Long.MAX_VALUE / 2 + keys.nextInt(Integer.MAX_VALUE));
+            if(this.minPriorityQueue!=null) {
+                this.minPriorityQueue.offer(entry);
+            } else if(this.indexed!=null) {
+                this.indexed.offer(i, entry.key);
+            } else if(this.pairingHeap!=null) {
+                this.nodes[i] = this.pairingHeap.insert(entry);
+            } else {
+                this.priorityQueue.offer(entry);
+            }
+        }
+        this.random = new Random(29);
+    }
+
+    @Benchmark
+    public long decreaseKey() {
+        int i = this.random.nextInt(this.size);
+        Entry entry = this.entries[i];
+        long key = entry.key - 1 - this.random.nextInt(1 << 20);
+        if(this.minPriorityQueue!=null) {
+            entry.key = key;
+            this.minPriorityQueue.decreaseKey(entry);
+        } else if(this.indexed!=null) {
+            entry.key = key;
+            this.indexed.decreaseKey(i, key);
+        } else if(this.pairingHeap!=null) {
+            /* the node already holds entry, lowering in place then telling the heap */
+            entry.key = key;
+            this.pairingHeap.decreaseKey(this.nodes[i], entry);
+        } else {
+            this.priorityQueue.remove(entry);
+            entry.key = key;
+            this.priorityQueue.offer(entry);
+        }
+        return key;
+    }
+
+}
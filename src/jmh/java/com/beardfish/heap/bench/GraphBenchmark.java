@@ -0,0 +1,79 @@
+package com.beardfish.heap.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.beardfish.heap.graph.CsrGraph;
+import com.beardfish.heap.graph.GraphGenerator;
+import com.beardfish.heap.graph.GraphSearch;
+import com.beardfish.heap.graph.Heuristic;
+import com.beardfish.heap.graph.QueueStrategy;
+import com.beardfish.heap.graph.SearchTree;
+
+/**
+ * End to end searches on synthetic graphs with every queue strategy: decreaseKey
+ * queues against lazy insertion into a MinHeap.
+ *
+ * @author Christian
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBenchmark {
+
+    /* road: a side x side grid, powerLaw: side * side vertices with 4 edges each */
+    @Param({"road", "powerLaw"})
+    public String graph;
+
+    @Param({"300", "1000"})
+    public int side;
+
+    @Param({"EAGER", "INDEXED", "LAZY"})
+    public QueueStrategy strategy;
+
+    private CsrGraph csr;
+    private int target;
+    private Heuristic heuristic;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        if("road".equals(this.graph)) {
+            this.csr = GraphGenerator.roadNetwork(this.side, this.side, 31);
+        } else {
+            this.csr = GraphGenerator.powerLaw(this.side * this.side, 4, 1000, 31);
+        }
+        this.target = this.csr.vertexCount() - 1;
+        if(this.csr.hasCoordinates()) {
+            this.heuristic = Heuristic.euclidean(this.csr, this.target);
+        } else {
+            /* no geometry, A* degenerates to Dijkstra stopping at the target */
+            this.heuristic = new Heuristic() {
+                @Override
+                public long estimate(int vertex) {
+                    return 0;
+                }
+            };
+        }
+    }
+
+    @Benchmark
+    public SearchTree dijkstra() {
+        return GraphSearch.dijkstra(this.csr, 0, this.strategy);
+    }
+
+    @Benchmark
+    public SearchTree prim() {
+        return GraphSearch.prim(this.csr, this.strategy);
+    }
+
+    @Benchmark
+    public SearchTree aStar() {
+        return GraphSearch.aStar(this.csr, 0, this.target, this.heuristic, this.strategy);
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.beardfish.heap.bench;
+
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * offer, poll and remove(Object) on the heaps of this library against
+ * java.util.PriorityQueue. Run with gradle jmh, which adds -prof gc, and narrow
+ * the matrix with -p, for example -p implementation=MinHeap,PriorityQueue.
+ *
+ * Sizes up to 1e7 run by default. Add -p size=100000000 with a heap of several
+ * gigabytes (-jvmArgsAppend -Xmx16g) for the 1e8 case.
+ *
+ * @author Christian
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeapBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    public int size;
+
+    @Param({"MinHeap", "QuaternaryMinHeap", "IndexedMinHeap", "LongKeyMinHeap", "MinPriorityQueue", "PriorityQueue"})
+    public String implementation;
+
+    @Param({"comparable", "comparator"})
+    public String ordering;
+
+    @Param({"random", "sorted", "reverse"})
+    public String input;
+
+    private Integer[] keys;
+    private Queue<Integer> queue;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void createKeys() {
+        this.keys = Inputs.keys(this.input, this.size, 19);
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        this.queue = Inputs.queue(this.implementation, this.ordering, this.size);
+        for(Integer key : this.keys) {
+            this.queue.offer(key);
+        }
+        this.random = new Random(19);
+    }
+
+    /**
+     * Build a heap of size elements from scratch, one offer at a time
+     */
+    @Benchmark
+    public Queue<Integer> offerAll() {
+        Queue<Integer> q = Inputs.queue(this.implementation, this.ordering, this.size);
+        for(Integer key : this.keys) {
+            q.offer(key);
+        }
+        return q;
+    }
+
+    /**
+     * Hold model: poll the head and offer it back, the size stays constant
+     */
+    @Benchmark
+    public Integer pollOffer() {
+        Integer head = this.queue.poll();
+        this.queue.offer(head);
+        return head;
+    }
+
+    /**
+     * Remove an arbitrary element by value and offer it back
+     */
+    @Benchmark
+    public boolean removeOffer() {
+        Integer key = this.keys[this.random.nextInt(this.keys.length)];
+        boolean removed = this.queue.remove(key);
+        this.queue.offer(key);
+        return removed;
+    }
+
+    /**
+     * Empty the heap filled for the iteration, a heapsort; the heap is only
+     * refilled once per iteration so run it as a single shot
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    public void pollAll(Blackhole blackhole) {
+        Integer head;
+        while((head = this.queue.poll())!=null) {
+            blackhole.consume(head);
+        }
+    }
+
+}
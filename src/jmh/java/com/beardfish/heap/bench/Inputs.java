@@ -0,0 +1,90 @@
+package com.beardfish.heap.bench;
+
+import java.util.*;
+
+import com.beardfish.heap.LongKeyMinHeap;
+import com.beardfish.heap.MinHeap;
+import com.beardfish.heap.MinPriorityQueue;
+
+/**
+ * Queues and input data shared by the benchmarks. Keys are boxed up front so
+ * the measured code never allocates them
+ *
+ * @author Christian
+ */
+
+final class Inputs {
+
+    /* a comparator the JIT cannot recognise as the natural ordering */
+    static final Comparator<Integer> COMPARATOR = new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+            return Integer.compare(a, b);
+        }
+    };
+
+    private Inputs() {
+    }
+
+    /**
+     * @param implementation - MinHeap, QuaternaryMinHeap, IndexedMinHeap, LongKeyMinHeap, MinPriorityQueue or PriorityQueue
+     * @param ordering - comparable or comparator, LongKeyMinHeap always compares the extracted long keys
+     * @param capacity
+     * @return an empty queue
+     */
+    static Queue<Integer> queue(String implementation, String ordering, int capacity) {
+        Comparator<Integer> comparator = comparator(ordering);
+        int initial = Math.max(capacity, 1);
+        if("MinHeap".equals(implementation)) {
+            return new MinHeap<Integer>(initial, comparator);
+        } else if("QuaternaryMinHeap".equals(implementation)) {
+            return new MinHeap<Integer>(initial, comparator, MinHeap.QUATERNARY);
+        } else if("IndexedMinHeap".equals(implementation)) {
+            return new MinHeap<Integer>(initial, comparator, MinHeap.BINARY, true);
+        } else if("LongKeyMinHeap".equals(implementation)) {
+            return new LongKeyMinHeap<Integer>(initial, Integer::longValue);
+        } else if("MinPriorityQueue".equals(implementation)) {
+            return new MinPriorityQueue<Integer>(initial, comparator);
+        } else if("PriorityQueue".equals(implementation)) {
+            return new PriorityQueue<Integer>(initial, comparator);
+        }
+        throw new IllegalArgumentException(implementation);
+    }
+
+    static Comparator<Integer> comparator(String ordering) {
+        if("comparable".equals(ordering)) {
+            return null;
+        } else if("comparator".equals(ordering)) {
+            return COMPARATOR;
+        }
+        throw new IllegalArgumentException(ordering);
+    }
+
+    /**
+     * @param kind - random, sorted or reverse
+     * @param n
+     * @param seed
+     * @return n distinct boxed keys in the requested order
+     */
+    static Integer[] keys(String kind, int n, long seed) {
+        Integer[] keys = new Integer[n];
+        for(int i = 0; i < n; i++) {
+            keys[i] = i;
+        }
+        if("random".equals(kind)) {
+            Random random = new Random(seed);
+            for(int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                Integer t = keys[i];
+                keys[i] = keys[j];
+                keys[j] = t;
+            }
+        } else if("reverse".equals(kind)) {
+            Collections.reverse(Arrays.asList(keys));
+        } else if(!"sorted".equals(kind)) {
+            throw new IllegalArgumentException(kind);
+        }
+        return keys;
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.beardfish.heap.bench;
+
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Random interleaving of offer and poll at a given ratio starting from a heap
+ * of size elements. Ratios above 50 let the heap grow during the iteration, so
+ * it is rebuilt before each one.
+ *
+ * @author Christian
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MixedBenchmark {
+
+    // operations in the precomputed schedule, a power of two
+    private static final int OPERATIONS = 1 << 16;
+
+    @Param({"1000", "100000", "10000000"})
+    public int size;
+
+    @Param({"MinHeap", "QuaternaryMinHeap", "MinPriorityQueue", "PriorityQueue"})
+    public String implementation;
+
+    @Param({"comparable", "comparator"})
+    public String ordering;
+
+    /* percentage of operations that are offers */
+    @Param({"25", "50", "75"})
+    public int offerPercent;
+
+    private Integer[] keys;
+    private boolean[] offers;
+    private Queue<Integer> queue;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createSchedule() {
+        this.keys = Inputs.keys("random", Math.max(this.size, OPERATIONS), 23);
+        Random random = new Random(23);
+        this.offers = new boolean[OPERATIONS];
+        for(int i = 0; i < OPERATIONS; i++) {
+            this.offers[i] = random.nextInt(100) < this.offerPercent;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        this.queue = Inputs.queue(this.implementation, this.ordering, this.size);
+        for(int i = 0; i < this.size; i++) {
+            this.queue.offer(this.keys[i]);
+        }
+        this.next = 0;
+    }
+
+    @Benchmark
+    public Integer mixed() {
+        int i = this.next++ & (OPERATIONS - 1);
+        if(this.offers[i] || this.queue.isEmpty()) {
+            this.queue.offer(this.keys[i]);
+            return null;
+        }
+        return this.queue.poll();
+    }
+
+}
@@ -0,0 +1,395 @@
+package com.beardfish.heap;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread safe BlockingQueue backed by a {@link MinHeap}. The heap is guarded by a
+ * single lock with separate notEmpty and notFull conditions. Every insertion wakes
+ * at most one waiting consumer and every removal wakes at most one waiting producer,
+ * so a single element never wakes the whole pool.
+ *
+ * The queue is unbounded unless a capacity is given, in which case producers
+ * block in put until there is room.
+ *
+ * @author Christian
+ *
+ * @param <E>
+ *            - the element stored in the heap
+ */
+
+public class BlockingMinHeap<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    // static variable
+    private static final int DEFAULT_INITIAL_CAPACITY = 12;
+    // instance variables
+    private final MinHeap<E> heap;
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = this.lock.newCondition();
+    private final Condition notFull = this.lock.newCondition();
+
+    public BlockingMinHeap() {
+        this(Integer.MAX_VALUE, null);
+    }
+
+    public BlockingMinHeap(int capacity) {
+        this(capacity, null);
+    }
+
+    public BlockingMinHeap(int capacity, Comparator<? super E> comparator) {
+        this(capacity, comparator, MinHeap.BINARY);
+    }
+
+    /**
+     * @param capacity - the maximum number of elements, Integer.MAX_VALUE for unbounded
+     * @param comparator - the ordering or null for the natural ordering
+     * @param arity - the number of children per node of the underlying heap
+     */
+    public BlockingMinHeap(int capacity, Comparator<? super E> comparator, int arity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+        this.heap = new MinHeap<E>(Math.min(capacity, DEFAULT_INITIAL_CAPACITY), comparator, arity);
+    }
+
+    @Override
+    public boolean add(E e) {
+        if(!this.offer(e)) {
+            throw new IllegalStateException("Queue full");
+        }
+        return true;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if(e==null) {
+            throw new NullPointerException();
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if(this.heap.size()>=this.capacity) {
+                return false;
+            }
+            this.insert(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        if(e==null) {
+            throw new NullPointerException();
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while(this.heap.size()>=this.capacity) {
+                this.notFull.await();
+            }
+            this.insert(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        if(e==null) {
+            throw new NullPointerException();
+        }
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while(this.heap.size()>=this.capacity) {
+                if(nanos<=0) {
+                    return false;
+                }
+                nanos = this.notFull.awaitNanos(nanos);
+            }
+            this.insert(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return this.heap.isEmpty() ? null : this.extract();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while(this.heap.isEmpty()) {
+                this.notEmpty.await();
+            }
+            return this.extract();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while(this.heap.isEmpty()) {
+                if(nanos<=0) {
+                    return null;
+                }
+                nanos = this.notEmpty.awaitNanos(nanos);
+            }
+            return this.extract();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return this.heap.peek();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return this.heap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        if(this.capacity==Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return this.capacity - this.heap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Comparator<? super E> comparator() {
+        return this.heap.comparator();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if(this.heap.remove(o)) {
+                this.notFull.signal();
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return this.heap.contains(o);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return this.drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if(c==null) {
+            throw new NullPointerException();
+        }
+        if(c==this) {
+            throw new IllegalArgumentException();
+        }
+        if(maxElements<=0) {
+            return 0;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int n = Math.min(this.heap.size(), maxElements);
+            for(int i = 0; i < n; i++) {
+                c.add(this.heap.poll());
+            }
+            /* one producer per freed slot */
+            if(this.capacity!=Integer.MAX_VALUE) {
+                for(int i = 0; i < n && lock.hasWaiters(this.notFull); i++) {
+                    this.notFull.signal();
+                }
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            this.heap.clear();
+            this.notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return this.heap.toArray();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return this.heap.toArray(a);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return this.heap.toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add to the heap and wake a single consumer. Call with the lock held
+     * @param e
+     */
+    private void insert(E e) {
+        this.heap.offer(e);
+        this.notEmpty.signal();
+    }
+
+    /**
+     * Remove the head and wake a single producer. Call with the lock held
+     * @return the head of the heap
+     */
+    private E extract() {
+        E head = this.heap.poll();
+        if(this.capacity!=Integer.MAX_VALUE) {
+            this.notFull.signal();
+        }
+        return head;
+    }
+
+    /* iterates over a snapshot of the queue taken when the iterator is created */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr(this.toArray());
+    }
+
+    private final class Itr implements Iterator<E> {
+
+        private final Object[] snapshot;
+
+        private int cursor = 0;
+
+        /* keeps track of the index of the cursor before a call to next() */
+        private int lastRet = -1;
+
+        Itr(Object[] snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.cursor < this.snapshot.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if(this.cursor >= this.snapshot.length) {
+                throw new NoSuchElementException();
+            }
+            return (E) this.snapshot[this.lastRet = this.cursor++];
+        }
+
+        @Override
+        public void remove() {
+            if(this.lastRet < 0) {
+                throw new IllegalStateException();
+            }
+            BlockingMinHeap.this.removeEq(this.snapshot[this.lastRet]);
+            this.lastRet = -1;
+        }
+
+    }
+
+    /**
+     * Remove the exact instance if it is still queued
+     * @param o
+     */
+    private void removeEq(Object o) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if(this.heap.removeEq(o)) {
+                this.notFull.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
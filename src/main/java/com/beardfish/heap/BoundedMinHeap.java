@@ -0,0 +1,121 @@
+package com.beardfish.heap;
+
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * MinHeap with a fixed capacity, used to keep the K greatest elements of a
+ * stream. The head is the smallest of the elements kept so {@link #offerIfBetter}
+ * rejects most candidates of a long stream with a single comparison against the
+ * head, and accepts the rest by replacing the head and percolating once.
+ *
+ * The backing array is allocated once at the full capacity and never grows.
+ * offer returns false and add throws IllegalStateException when the heap is full.
+ *
+ * @author Christian
+ *
+ * @param <E>
+ *            - the element stored in the heap
+ */
+
+public class BoundedMinHeap<E> extends MinHeap<E> {
+
+    private final int maxSize;
+
+    public BoundedMinHeap(int maxSize) {
+        this(maxSize, null);
+    }
+
+    public BoundedMinHeap(int maxSize, Comparator<? super E> comparator) {
+        this(maxSize, comparator, MinHeap.BINARY);
+    }
+
+    /**
+     * @param maxSize - the number of elements kept
+     * @param comparator - the ordering or null for the natural ordering
+     * @param arity - the number of children per node
+     */
+    public BoundedMinHeap(int maxSize, Comparator<? super E> comparator, int arity) {
+        super(maxSize, comparator, arity);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Keep the element if the heap is not full yet or if it is greater than the
+     * current head, which is then evicted
+     * @param object
+     * @return true if the element was kept
+     */
+    public boolean offerIfBetter(E object) {
+        if(this.size()<this.maxSize) {
+            return super.offer(object);
+        }
+        if(object==null) {
+            throw new NullPointerException();
+        }
+        if(this.compare(object, this.peek())<=0) {
+            return false;
+        }
+        this.replaceTop(object);
+        return true;
+    }
+
+    @Override
+    public boolean offer(E object) {
+        if(this.size()>=this.maxSize) {
+            if(object==null) {
+                throw new NullPointerException();
+            }
+            return false;
+        }
+        return super.offer(object);
+    }
+
+    @Override
+    public boolean add(E object) {
+        if(!this.offer(object)) {
+            throw new IllegalStateException("Queue full");
+        }
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        if(c==null) {
+            throw new NullPointerException();
+        }
+        if(c.size()>this.remainingCapacity()) {
+            /* add one at a time so the overflowing element throws */
+            boolean modified = false;
+            for(E e : c) {
+                modified |= this.add(e);
+            }
+            return modified;
+        }
+        return super.addAll(c);
+    }
+
+    /**
+     * The capacity is fixed
+     * @throws IllegalStateException always
+     */
+    @Override
+    public void grow(int minCapacity) {
+        throw new IllegalStateException("Queue full");
+    }
+
+    /**
+     * @return the number of elements kept
+     */
+    public int maxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return the number of elements that can be offered before the heap is full
+     */
+    public int remainingCapacity() {
+        return this.maxSize - this.size();
+    }
+
+}
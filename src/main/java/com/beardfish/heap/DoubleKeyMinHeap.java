@@ -0,0 +1,80 @@
+package com.beardfish.heap;
+
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * MinHeap ordered by a double priority extracted from every element. The key is
+ * read once on offer and stored as a long whose signed order matches the order
+ * of the doubles, so the heap shares the sifting of {@link KeyedMinHeap}:
+ * sifting compares primitives only, no comparator call and no element is
+ * dereferenced until it is returned.
+ *
+ * Keys follow {@link Double#compare}, so -0.0 comes before 0.0, and an element
+ * whose key is NaN is rejected on offer. The key is not read again, an element
+ * whose key changes while it is in the heap has to be removed and offered
+ * again. The iterator provides no guarantees of the order of iteration.
+ *
+ * @author Christian
+ *
+ * @param <E>
+ *            - the element stored in the heap
+ */
+
+public class DoubleKeyMinHeap<E> extends KeyedMinHeap<E> {
+
+    // static variable
+    private static final int DEFAULT_INITIAL_CAPACITY = 12;
+    // instance variables
+    private final ToDoubleFunction<? super E> keyExtractor;
+
+    public DoubleKeyMinHeap(ToDoubleFunction<? super E> keyExtractor) {
+        this(DEFAULT_INITIAL_CAPACITY, keyExtractor, MinHeap.BINARY);
+    }
+
+    public DoubleKeyMinHeap(int initialCapacity, ToDoubleFunction<? super E> keyExtractor) {
+        this(initialCapacity, keyExtractor, MinHeap.BINARY);
+    }
+
+    /**
+     * @param initialCapacity
+     * @param keyExtractor - reads the priority of an element, smallest first
+     * @param arity - the number of children per node, a power of two between 2 and 64
+     */
+    public DoubleKeyMinHeap(int initialCapacity, ToDoubleFunction<? super E> keyExtractor, int arity) {
+        super(initialCapacity, arity);
+        if(keyExtractor==null) {
+            throw new NullPointerException();
+        }
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * @return the key of the head
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public double peekKey() {
+        return Double.longBitsToDouble(sortable(this.headKey()));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the key is NaN
+     */
+    @Override
+    long keyOf(E element) {
+        double key = this.keyExtractor.applyAsDouble(element);
+        if(key!=key) {
+            throw new IllegalArgumentException();
+        }
+        return sortable(Double.doubleToRawLongBits(key));
+    }
+
+    /**
+     * Flip the magnitude bits of negative doubles so the signed order of the
+     * longs is the order of the doubles. The mapping is its own inverse
+     */
+    private static long sortable(long bits) {
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+}
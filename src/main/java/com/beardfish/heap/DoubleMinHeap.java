@@ -0,0 +1,172 @@
+package com.beardfish.heap;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * MinHeap specialized for primitive doubles. The values are kept in a plain
+ * double[] so offering and polling never boxes and never allocates unless the
+ * heap has to grow. Values are compared with the primitive operators so NaN
+ * is rejected on offer.
+ *
+ * @author Christian
+ */
+
+public class DoubleMinHeap {
+
+    // static variable
+    private static final int DEFAULT_INITIAL_CAPACITY = 12;
+    // instance variables
+    private double[] queue;
+    private int size = 0;
+
+    public DoubleMinHeap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public DoubleMinHeap(int initialCapacity) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.queue = new double[initialCapacity];
+    }
+
+    /**
+     * Inserts the value into the heap
+     * @param value the value to add
+     * @return true
+     * @throws IllegalArgumentException if the value is NaN
+     */
+    public boolean offer(double value) {
+        if(value!=value) {
+            throw new IllegalArgumentException();
+        }
+        int i = this.size;
+        /* check the capacity of the array */
+        if(i>=this.queue.length) {
+            grow(i+1);
+        }
+        this.size = i + 1;
+        percolateUp(i,value);
+        return true;
+    }
+
+    /**
+     * Retrieves the head of the heap
+     * @return the smallest value
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public double peekDouble() {
+        if(this.size==0) {
+            throw new NoSuchElementException();
+        }
+        return this.queue[0];
+    }
+
+    /**
+     * Retrieves and removes the head of the heap
+     * @return the smallest value
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public double pollDouble() {
+        if(this.size==0) {
+            throw new NoSuchElementException();
+        }
+        double head = this.queue[0];
+        int s = --this.size;
+        if(s>0) {
+            percolateDown(0,this.queue[s]);
+        }
+        return head;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size==0;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Grow the heap by the integer specified
+     * @param minCapacity the minimum capacity to increase by
+     */
+    public void grow(int minCapacity) {
+        if(minCapacity<0) {
+            throw new OutOfMemoryError();
+        }
+        int oldCapacity = this.queue.length;
+        int newCapacity = ((oldCapacity<64)) ?
+                ((oldCapacity+1) * 2) :
+                ((oldCapacity/2) * 3);
+        if(newCapacity<0) {
+            newCapacity = Integer.MAX_VALUE;
+        }
+        if(newCapacity < minCapacity) {
+            newCapacity = minCapacity;
+        }
+        this.queue = Arrays.copyOf(this.queue,newCapacity);
+    }
+
+    /**
+     * Moves the hole at index up until the parent is less than or equal to value
+     * @param index
+     * @param value
+     */
+    private void percolateUp(int index, double value) {
+        double[] q = this.queue;
+        while(index>0) {
+            int p = (index-1) >>> 1;
+            double parent = q[p];
+            if(value>=parent) {
+                break;
+            }
+            q[index] = parent;
+            index = p;
+        }
+        q[index] = value;
+    }
+
+    /**
+     * Moves the hole at index down, pulling up the smaller child, until value fits
+     * @param index
+     * @param value
+     */
+    private void percolateDown(int index, double value) {
+        double[] q = this.queue;
+        int n = this.size;
+        int half = n >>> 1;
+        while(index<half) {
+            int child = (index<<1)+1;
+            double c = q[child];
+            int right = child+1;
+            if(right<n && q[right]<c) {
+                c = q[child = right];
+            }
+            if(value<=c) {
+                break;
+            }
+            q[index] = c;
+            index = child;
+        }
+        q[index] = value;
+    }
+
+    /**
+     * @return the values in heap order
+     */
+    public double[] toArray() {
+        return Arrays.copyOf(this.queue,this.size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+}
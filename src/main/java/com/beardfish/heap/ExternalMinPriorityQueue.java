@@ -0,0 +1,464 @@
+package com.beardfish.heap;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Min priority queue that can hold more elements than fit in memory. Offered
+ * elements go into an in-memory {@link MinHeap} buffer; once the estimated size
+ * of the buffer exceeds the memory budget the buffer is written to a temporary
+ * file as a sorted run and emptied. poll merges the head of the buffer with the
+ * heads of all runs, each read sequentially through its own buffered stream, so
+ * the memory used stays bounded by the budget plus one read buffer per run.
+ *
+ * Every run keeps a file open, so the number of runs is bounded by maxRuns:
+ * when a spill reaches the bound the smaller half of the runs is merged into a
+ * single new run. Merging the smallest runs first keeps the sizes roughly
+ * geometric, so an element is rewritten O(log(n / budget)) times at most.
+ *
+ * Elements are written and read back with a {@link Serializer}. I/O failures are
+ * reported as UncheckedIOException and leave the queue unchanged: a failed spill
+ * keeps the elements in the buffer and a failed read keeps the head of its run,
+ * the run is reopened at that head by the next poll. A failed merge keeps the
+ * original runs and is not reported, it is tried again on the next spill, so
+ * the number of runs can exceed maxRuns while merges keep failing.
+ * The queue is not a Collection since most of the elements live on disk and
+ * cannot be iterated or removed in place. Close the queue to delete its run files.
+ *
+ * @author Christian
+ *
+ * @param <E>
+ *            - the element stored in the queue
+ */
+
+public class ExternalMinPriorityQueue<E> implements Closeable {
+
+    /**
+     * Converts elements to and from their on disk form
+     * @param <E>
+     */
+    public interface Serializer<E> {
+
+        void write(DataOutput out, E element) throws IOException;
+
+        E read(DataInput in) throws IOException;
+
+        /**
+         * @param element
+         * @return the approximate number of bytes the element occupies in memory
+         */
+        long sizeOf(E element);
+    }
+
+    /* runs open at once unless given */
+    public static final int DEFAULT_MAX_RUNS = 64;
+    // bytes buffered per run file
+    private static final int RUN_BUFFER_SIZE = 1 << 16;
+    // instance variables
+    private final Comparator<? super E> comparator;
+    private final Comparator<Run<E>> runComparator;
+    private final Serializer<E> serializer;
+    private final long memoryBudget;
+    private final int maxRuns;
+    private final File directory;
+    private final MinHeap<E> buffer;
+    private final MinHeap<Run<E>> runs;
+    private long bufferBytes = 0;
+    // elements still unread in all runs
+    private long spilled = 0;
+
+    /**
+     * A sorted run on disk together with its next unread element
+     */
+    private static final class Run<E> implements Closeable {
+
+        final File file;
+
+        DataInputStream in;
+
+        final Serializer<E> serializer;
+
+        // elements in the file
+        final long count;
+
+        // elements after head still to be read
+        long remaining;
+
+        E head;
+
+        // a read failed, the stream may stop inside a record
+        boolean stale = false;
+
+        Run(File file, long count, Serializer<E> serializer) throws IOException {
+            this(file, count, 0, serializer);
+        }
+
+        /**
+         * @param skip - elements at the start of the file that were already consumed
+         */
+        Run(File file, long count, long skip, Serializer<E> serializer) throws IOException {
+            this.file = file;
+            this.serializer = serializer;
+            this.count = count;
+            this.remaining = count;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), RUN_BUFFER_SIZE));
+            try {
+                for(long i = 0; i < skip; i++) {
+                    this.advance();
+                }
+                this.advance();
+            } catch (IOException e) {
+                this.release();
+                throw e;
+            }
+        }
+
+        /**
+         * Read the next element into head
+         * @return false if the run is exhausted
+         */
+        boolean advance() throws IOException {
+            if(this.remaining==0) {
+                this.head = null;
+                return false;
+            }
+            try {
+                if(this.stale) {
+                    this.reopen();
+                }
+                this.head = this.serializer.read(this.in);
+            } catch (IOException e) {
+                /* head and remaining are untouched, the next call starts over after head */
+                this.stale = true;
+                throw e;
+            }
+            this.remaining--;
+            return true;
+        }
+
+        /**
+         * Replace the stream with a new one positioned after head
+         */
+        private void reopen() throws IOException {
+            this.release();
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file), RUN_BUFFER_SIZE));
+            for(long i = this.count - this.remaining; i > 0; i--) {
+                this.serializer.read(this.in);
+            }
+            this.stale = false;
+        }
+
+        /**
+         * Open a second reader positioned at head, leaving this run untouched
+         */
+        Run<E> reader() throws IOException {
+            return new Run<E>(this.file, this.count, this.count - this.remaining - 1, this.serializer);
+        }
+
+        /**
+         * Close the stream but keep the file
+         */
+        void release() {
+            try {
+                this.in.close();
+            } catch (IOException e) {
+                /* nothing left to read */
+            }
+        }
+
+        @Override
+        public void close() {
+            this.release();
+            this.file.delete();
+        }
+    }
+
+    /**
+     * @param serializer - writes elements to and reads them from the run files
+     * @param memoryBudget - bytes of elements to buffer in memory before spilling
+     * @param directory - where run files are created, null for the default temporary directory
+     */
+    public ExternalMinPriorityQueue(Serializer<E> serializer, long memoryBudget, File directory) {
+        this(serializer, memoryBudget, directory, null);
+    }
+
+    /**
+     * @param serializer - writes elements to and reads them from the run files
+     * @param memoryBudget - bytes of elements to buffer in memory before spilling
+     * @param directory - where run files are created, null for the default temporary directory
+     * @param comparator - the ordering or null for the natural ordering
+     */
+    public ExternalMinPriorityQueue(Serializer<E> serializer, long memoryBudget, File directory,
+                                    final Comparator<? super E> comparator) {
+        this(serializer, memoryBudget, directory, comparator, DEFAULT_MAX_RUNS);
+    }
+
+    /**
+     * @param serializer - writes elements to and reads them from the run files
+     * @param memoryBudget - bytes of elements to buffer in memory before spilling
+     * @param directory - where run files are created, null for the default temporary directory
+     * @param comparator - the ordering or null for the natural ordering
+     * @param maxRuns - the most runs, and so open files, kept at once; at least 2.
+     *                A merge briefly opens a second reader on each run it merges
+     */
+    public ExternalMinPriorityQueue(Serializer<E> serializer, long memoryBudget, File directory,
+                                    final Comparator<? super E> comparator, int maxRuns) {
+        if(serializer==null) {
+            throw new NullPointerException();
+        }
+        if(memoryBudget < 1 || maxRuns < 2) {
+            throw new IllegalArgumentException();
+        }
+        this.serializer = serializer;
+        this.memoryBudget = memoryBudget;
+        this.maxRuns = maxRuns;
+        this.directory = directory;
+        this.comparator = comparator;
+        this.buffer = new MinHeap<E>(12, comparator);
+        this.runComparator = new Comparator<Run<E>>() {
+            @Override
+            public int compare(Run<E> a, Run<E> b) {
+                return ExternalMinPriorityQueue.this.compare(a.head, b.head);
+            }
+        };
+        this.runs = new MinHeap<Run<E>>(12, this.runComparator);
+    }
+
+    /**
+     * Inserts the element, spilling the buffer to disk once it exceeds the budget.
+     * The element is kept even when the exception is thrown: a failed spill leaves
+     * it in memory with the rest of the buffer, so the insert must not be retried.
+     * A failed merge after the spill is not reported
+     * @param e
+     * @return true
+     * @throws UncheckedIOException if the buffer had to be spilled and could not be
+     */
+    public boolean offer(E e) {
+        if(e==null) {
+            throw new NullPointerException();
+        }
+        this.buffer.offer(e);
+        this.bufferBytes += this.serializer.sizeOf(e);
+        if(this.bufferBytes > this.memoryBudget) {
+            this.spill();
+            if(this.runs.size() >= this.maxRuns) {
+                try {
+                    this.merge();
+                } catch (UncheckedIOException ex) {
+                    /* the runs are unchanged, the next spill merges again */
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the smallest element or null if the queue is empty
+     */
+    public E peek() {
+        E head = this.buffer.peek();
+        Run<E> run = this.runs.peek();
+        if(run!=null && (head==null || this.compare(run.head, head)<0)) {
+            return run.head;
+        }
+        return head;
+    }
+
+    /**
+     * Retrieves and removes the smallest element
+     * @return the smallest element or null if the queue is empty
+     * @throws UncheckedIOException if the element after it in its run could not
+     *         be read, the element then stays in the queue
+     */
+    public E poll() {
+        E head = this.buffer.peek();
+        Run<E> run = this.runs.peek();
+        if(run!=null && (head==null || this.compare(run.head, head)<0)) {
+            return this.pollRun();
+        }
+        if(head!=null) {
+            this.buffer.poll();
+            this.bufferBytes -= this.serializer.sizeOf(head);
+        }
+        return head;
+    }
+
+    /**
+     * @return the number of elements, saturated at Integer.MAX_VALUE
+     */
+    public int size() {
+        return (int) Math.min(this.longSize(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the number of elements in memory and on disk
+     */
+    public long longSize() {
+        return this.buffer.size() + this.spilled;
+    }
+
+    public boolean isEmpty() {
+        return this.buffer.isEmpty() && this.runs.isEmpty();
+    }
+
+    public Comparator<? super E> comparator() {
+        return this.comparator;
+    }
+
+    /**
+     * @return the number of runs on disk that still hold elements
+     */
+    public int runCount() {
+        return this.runs.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ExternalMinPriorityQueue[size=" + this.longSize() + ", runs=" + this.runCount() + "]";
+    }
+
+    /**
+     * Remove every element and delete the run files
+     */
+    public void clear() {
+        this.buffer.clear();
+        this.bufferBytes = 0;
+        Run<E> run;
+        while((run = this.runs.poll())!=null) {
+            run.close();
+        }
+        this.spilled = 0;
+    }
+
+    /**
+     * Same as clear
+     */
+    @Override
+    public void close() {
+        this.clear();
+    }
+
+    /**
+     * Write the whole buffer to a new run file in priority order and empty it.
+     * The run is written from a sorted copy, the buffer is only emptied once the
+     * file is complete
+     */
+    @SuppressWarnings("unchecked")
+    private void spill() {
+        int count = this.buffer.size();
+        if(count==0) {
+            return;
+        }
+        E[] sorted = (E[]) this.buffer.toArray();
+        Arrays.sort(sorted, this.comparator);
+        File file = null;
+        try {
+            file = File.createTempFile("minheap-run", ".bin", this.directory);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), RUN_BUFFER_SIZE));
+            try {
+                for(int i = 0; i < count; i++) {
+                    this.serializer.write(out, sorted[i]);
+                }
+            } finally {
+                out.close();
+            }
+            this.runs.offer(new Run<E>(file, count, this.serializer));
+        } catch (IOException e) {
+            if(file!=null) {
+                file.delete();
+            }
+            throw new UncheckedIOException(e);
+        }
+        this.buffer.clear();
+        this.bufferBytes = 0;
+        this.spilled += count;
+    }
+
+    /**
+     * Merge the smaller half of the runs into one new run. The merge reads
+     * through second readers so the runs are only replaced once the new file
+     * is complete
+     */
+    private void merge() {
+        List<Run<E>> chosen = new ArrayList<Run<E>>(this.runs);
+        Collections.sort(chosen, new Comparator<Run<E>>() {
+            @Override
+            public int compare(Run<E> a, Run<E> b) {
+                return Long.compare(a.remaining, b.remaining);
+            }
+        });
+        chosen = chosen.subList(0, Math.max(2, this.maxRuns / 2));
+        MinHeap<Run<E>> readers = new MinHeap<Run<E>>(chosen.size(), this.runComparator);
+        File file = null;
+        long count = 0;
+        try {
+            for(Run<E> run : chosen) {
+                readers.offer(run.reader());
+            }
+            file = File.createTempFile("minheap-run", ".bin", this.directory);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), RUN_BUFFER_SIZE));
+            try {
+                Run<E> reader;
+                while((reader = readers.peek())!=null) {
+                    this.serializer.write(out, reader.head);
+                    count++;
+                    if(reader.advance()) {
+                        readers.replaceTop(reader);
+                    } else {
+                        readers.poll().release();
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            Run<E> merged = new Run<E>(file, count, this.serializer);
+            final Set<Run<E>> replaced = Collections.newSetFromMap(new IdentityHashMap<Run<E>, Boolean>());
+            replaced.addAll(chosen);
+            this.runs.removeIf(run -> replaced.contains(run));
+            for(Run<E> run : replaced) {
+                run.close();
+            }
+            this.runs.offer(merged);
+        } catch (IOException e) {
+            if(file!=null) {
+                file.delete();
+            }
+            throw new UncheckedIOException(e);
+        } finally {
+            Run<E> reader;
+            while((reader = readers.poll())!=null) {
+                reader.release();
+            }
+        }
+    }
+
+    /**
+     * Remove the head of the run with the smallest head
+     * @return the removed element
+     */
+    private E pollRun() {
+        Run<E> run = this.runs.peek();
+        E head = run.head;
+        try {
+            if(run.advance()) {
+                this.runs.replaceTop(run);
+            } else {
+                this.runs.poll().close();
+            }
+        } catch (IOException e) {
+            /* advance kept head, the run stays on top unchanged */
+            throw new UncheckedIOException(e);
+        }
+        this.spilled--;
+        return head;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        if(this.comparator!=null) {
+            return this.comparator.compare(a, b);
+        }
+        return ((Comparable<? super E>) a).compareTo(b);
+    }
+
+}
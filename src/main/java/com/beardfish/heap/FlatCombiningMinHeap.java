@@ -0,0 +1,388 @@
+package com.beardfish.heap;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread safe, strictly ordered MinHeap using flat combining. A thread that wants
+ * to offer or poll publishes the request in its own slot and then either waits
+ * for the answer or, if nobody else is combining, becomes the combiner: it takes
+ * the combiner lock and applies every pending request to the underlying
+ * {@link MinHeap} in one batch. The heap is only ever touched by one thread at a
+ * time, which keeps its array hot in that core's cache, and waiting threads spin
+ * on their own slot instead of on a shared lock.
+ *
+ * Within a batch an offer whose element is no greater than the current minimum
+ * is handed straight to a pending poll (elimination) without touching the array.
+ *
+ * Slots that stay idle for a while are unlinked by the combiner and transparently
+ * relinked by their owner on its next request. The next pointer of a slot in the
+ * list is only ever rewritten while holding the combiner lock: the combiner
+ * unlinks, and an owner relinks its slot only after taking the lock. New slots
+ * are pushed onto the head with a CAS, which never touches an existing next
+ * pointer, so a combiner walking the list cannot be sent around a cycle.
+ *
+ * @author Christian
+ *
+ * @param <E>
+ *            - the element stored in the heap
+ */
+
+public class FlatCombiningMinHeap<E> extends AbstractQueue<E> {
+
+    // slot states
+    private static final int NONE = 0;
+    private static final int OFFER = 1;
+    private static final int POLL = 2;
+    // passes over the publication list per combining session
+    private static final int COMBINING_PASSES = 3;
+    // every this many sessions the combiner unlinks idle slots
+    private static final int CLEANUP_INTERVAL = 1024;
+    // sessions a slot may stay idle before it is unlinked
+    private static final int MAX_IDLE_SESSIONS = 4096;
+    // spins on the own slot before yielding the processor
+    private static final int SPINS_BEFORE_YIELD = 64;
+    // instance variables
+    private final MinHeap<E> heap;
+    private final ReentrantLock combinerLock = new ReentrantLock();
+    private final AtomicReference<Slot<E>> publications = new AtomicReference<Slot<E>>();
+    private final ThreadLocal<Slot<E>> localSlot = new ThreadLocal<Slot<E>>();
+    // guarded by combinerLock
+    private int sessions = 0;
+    // scratch space for one batch, guarded by combinerLock
+    private final ArrayList<Slot<E>> pendingPolls = new ArrayList<Slot<E>>();
+
+    /**
+     * Publication record owned by a single thread
+     */
+    private static final class Slot<E> {
+
+        /* request state, written by the owner to publish and by the combiner to answer */
+        volatile int op = NONE;
+
+        /* true while the slot is reachable from the publication list */
+        volatile boolean linked;
+
+        /* next slot in the publication list */
+        volatile Slot<E> next;
+
+        /* element to offer, published by the volatile write of op */
+        E argument;
+
+        /* answer to a poll, published by the volatile write of op */
+        E result;
+
+        /* session in which the slot last carried a request, guarded by combinerLock */
+        int lastActive;
+    }
+
+    public FlatCombiningMinHeap() {
+        this(new MinHeap<E>());
+    }
+
+    public FlatCombiningMinHeap(Comparator<? super E> comparator) {
+        this(comparator, MinHeap.BINARY);
+    }
+
+    /**
+     * @param comparator - the ordering or null for the natural ordering
+     * @param arity - the number of children per node of the underlying heap
+     */
+    public FlatCombiningMinHeap(Comparator<? super E> comparator, int arity) {
+        this(new MinHeap<E>(12, comparator, arity));
+    }
+
+    private FlatCombiningMinHeap(MinHeap<E> heap) {
+        this.heap = heap;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if(e==null) {
+            throw new NullPointerException();
+        }
+        Slot<E> slot = this.slot();
+        slot.argument = e;
+        slot.op = OFFER;
+        this.await(slot);
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        Slot<E> slot = this.slot();
+        slot.op = POLL;
+        this.await(slot);
+        E result = slot.result;
+        slot.result = null;
+        return result;
+    }
+
+    @Override
+    public E peek() {
+        this.combinerLock.lock();
+        try {
+            return this.heap.peek();
+        } finally {
+            this.combinerLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        this.combinerLock.lock();
+        try {
+            return this.heap.size();
+        } finally {
+            this.combinerLock.unlock();
+        }
+    }
+
+    public Comparator<? super E> comparator() {
+        return this.heap.comparator();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        this.combinerLock.lock();
+        try {
+            return this.heap.remove(o);
+        } finally {
+            this.combinerLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        this.combinerLock.lock();
+        try {
+            return this.heap.contains(o);
+        } finally {
+            this.combinerLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        this.combinerLock.lock();
+        try {
+            this.heap.clear();
+        } finally {
+            this.combinerLock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        this.combinerLock.lock();
+        try {
+            return this.heap.toArray();
+        } finally {
+            this.combinerLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(this.toArray());
+    }
+
+    /* iterates over a snapshot of the heap taken when the iterator is created */
+    @Override
+    public Iterator<E> iterator() {
+        final Object[] snapshot = this.toArray();
+        return new Iterator<E>() {
+
+            private int cursor = 0;
+
+            private int lastRet = -1;
+
+            @Override
+            public boolean hasNext() {
+                return this.cursor < snapshot.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if(this.cursor >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                return (E) snapshot[this.lastRet = this.cursor++];
+            }
+
+            @Override
+            public void remove() {
+                if(this.lastRet < 0) {
+                    throw new IllegalStateException();
+                }
+                FlatCombiningMinHeap.this.remove(snapshot[this.lastRet]);
+                this.lastRet = -1;
+            }
+        };
+    }
+
+    /**
+     * @return the slot of the calling thread, linked into the publication list
+     */
+    private Slot<E> slot() {
+        Slot<E> slot = this.localSlot.get();
+        if(slot==null) {
+            slot = new Slot<E>();
+            this.localSlot.set(slot);
+            /* no combiner has seen the new slot yet, it can be pushed without the lock */
+            this.link(slot);
+        } else if(!slot.linked) {
+            this.relink(slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Link a slot the combiner unlinked back into the list, holding the combiner
+     * lock so no combiner walks the list while its next pointer changes
+     * @param slot
+     */
+    private void relink(Slot<E> slot) {
+        this.combinerLock.lock();
+        try {
+            if(!slot.linked) {
+                this.link(slot);
+            }
+        } finally {
+            this.combinerLock.unlock();
+        }
+    }
+
+    /**
+     * Push the slot onto the head of the publication list
+     * @param slot
+     */
+    private void link(Slot<E> slot) {
+        slot.linked = true;
+        Slot<E> head;
+        do {
+            head = this.publications.get();
+            slot.next = head;
+        } while(!this.publications.compareAndSet(head, slot));
+    }
+
+    /**
+     * Wait until the request in slot has been answered, combining whenever the
+     * combiner lock is free
+     * @param slot
+     */
+    private void await(Slot<E> slot) {
+        int spins = 0;
+        while(slot.op!=NONE) {
+            if(!slot.linked) {
+                /* unlinked by a combiner after the request was published, relink it under the lock and combine */
+                this.combinerLock.lock();
+                try {
+                    if(!slot.linked) {
+                        this.link(slot);
+                    }
+                    this.combine();
+                } finally {
+                    this.combinerLock.unlock();
+                }
+            } else if(this.combinerLock.tryLock()) {
+                try {
+                    this.combine();
+                } finally {
+                    this.combinerLock.unlock();
+                }
+            } else if(++spins % SPINS_BEFORE_YIELD == 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Apply every published request to the heap. Call with the combiner lock held
+     */
+    private void combine() {
+        int session = ++this.sessions;
+        for(int pass = 0; pass < COMBINING_PASSES; pass++) {
+            if(!this.combinePass(session)) {
+                break;
+            }
+        }
+        if(session % CLEANUP_INTERVAL == 0) {
+            this.unlinkIdle(session);
+        }
+    }
+
+    /**
+     * One scan over the publication list
+     * @param session
+     * @return true if any request was found
+     */
+    private boolean combinePass(int session) {
+        MinHeap<E> heap = this.heap;
+        ArrayList<Slot<E>> polls = this.pendingPolls;
+        boolean found = false;
+        for(Slot<E> slot = this.publications.get(); slot!=null; slot = slot.next) {
+            int op = slot.op;
+            if(op==POLL) {
+                slot.lastActive = session;
+                polls.add(slot);
+                found = true;
+            } else if(op==OFFER) {
+                slot.lastActive = session;
+                E e = slot.argument;
+                slot.argument = null;
+                int last = polls.size() - 1;
+                if(last >= 0 && (heap.isEmpty() || this.compare(e, heap.peek()) <= 0)) {
+                    /* the offered element would become the head, hand it over directly */
+                    Slot<E> taker = polls.remove(last);
+                    taker.result = e;
+                    taker.op = NONE;
+                } else {
+                    heap.offer(e);
+                }
+                slot.op = NONE;
+                found = true;
+            }
+        }
+        for(int i = 0; i < polls.size(); i++) {
+            Slot<E> taker = polls.get(i);
+            taker.result = heap.poll();
+            taker.op = NONE;
+        }
+        polls.clear();
+        return found;
+    }
+
+    /**
+     * Unlink slots that carried no request for a while. The head is left alone
+     * because other threads push onto it concurrently; next pointers of slots
+     * already in the list only change under the combiner lock, which is held here
+     * @param session
+     */
+    private void unlinkIdle(int session) {
+        Slot<E> prev = this.publications.get();
+        if(prev==null) {
+            return;
+        }
+        for(Slot<E> slot = prev.next; slot!=null; slot = slot.next) {
+            if(slot.op==NONE && session - slot.lastActive > MAX_IDLE_SESSIONS) {
+                prev.next = slot.next;
+                slot.linked = false;
+            } else {
+                prev = slot;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        Comparator<? super E> comparator = this.heap.comparator();
+        if(comparator!=null) {
+            return comparator.compare(a, b);
+        }
+        return ((Comparable<? super E>) a).compareTo(b);
+    }
+
+}
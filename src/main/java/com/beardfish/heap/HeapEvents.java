@@ -0,0 +1,62 @@
+package com.beardfish.heap;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder events emitted by heaps with statistics enabled. They cost
+ * nothing unless a recording has them enabled.
+ *
+ * @author Christian
+ */
+
+final class HeapEvents {
+
+    private HeapEvents() {
+    }
+
+    @Name("com.beardfish.heap.Resize")
+    @Label("Heap Resize")
+    @Category("Heap")
+    @Description("The backing array of a heap was grown")
+    static final class Resize extends Event {
+
+        @Label("Heap Class")
+        String heapClass;
+
+        @Label("Old Capacity")
+        int oldCapacity;
+
+        @Label("New Capacity")
+        int newCapacity;
+
+        @Label("Copy Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long copyDuration;
+    }
+
+    @Name("com.beardfish.heap.SlowOperation")
+    @Label("Slow Heap Operation")
+    @Category("Heap")
+    @Description("A heap operation took at least the slow operation threshold")
+    static final class SlowOperation extends Event {
+
+        @Label("Heap Class")
+        String heapClass;
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Size")
+        int size;
+
+        @Label("Operation Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long operationDuration;
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.beardfish.heap;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters kept by a heap once statistics are enabled: comparisons, moves, sift
+ * depths and resizes, plus timing of the public operations. Resizes and
+ * operations slower than a threshold are also emitted as flight recorder events
+ * (com.beardfish.heap.Resize and com.beardfish.heap.SlowOperation).
+ *
+ * The counters are plain fields written by the thread using the heap. Read from
+ * another thread, for example over JMX, they are approximate. Publish them with
+ * register.
+ *
+ * @author Christian
+ */
+
+public class HeapStats implements HeapStatsMXBean {
+
+    /* one millisecond */
+    public static final long DEFAULT_SLOW_OPERATION_THRESHOLD_NANOS = 1000000L;
+    // instance variables
+    long comparisons;
+    private long moves;
+    private long sifts;
+    private long siftLevels;
+    private int maxSiftDepth;
+    private long resizes;
+    private long resizeNanos;
+    private int capacity;
+    private long slowOperations;
+    private volatile long slowOperationThresholdNanos = DEFAULT_SLOW_OPERATION_THRESHOLD_NANOS;
+    private ObjectName objectName;
+
+    HeapStats(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Record a percolation
+     * @param depth - levels travelled
+     * @param comparisons - comparisons of the sifted element
+     * @param moves - stores into the heap array
+     */
+    void sift(int depth, int comparisons, int moves) {
+        this.sifts++;
+        this.siftLevels += depth;
+        this.comparisons += comparisons;
+        this.moves += moves;
+        if(depth > this.maxSiftDepth) {
+            this.maxSiftDepth = depth;
+        }
+    }
+
+    /**
+     * Record a resize of the backing array
+     * @param heap
+     * @param oldCapacity
+     * @param newCapacity
+     * @param start - System.nanoTime before the copy
+     */
+    void resize(Object heap, int oldCapacity, int newCapacity, long start) {
+        long nanos = System.nanoTime() - start;
+        this.resizes++;
+        this.resizeNanos += nanos;
+        this.capacity = newCapacity;
+        HeapEvents.Resize event = new HeapEvents.Resize();
+        if(event.isEnabled()) {
+            event.heapClass = heap.getClass().getName();
+            event.oldCapacity = oldCapacity;
+            event.newCapacity = newCapacity;
+            event.copyDuration = nanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Record the end of a timed operation
+     * @param heap
+     * @param operation - the method name
+     * @param start - System.nanoTime when the operation started
+     * @param size - the size of the heap afterwards
+     */
+    void operation(Object heap, String operation, long start, int size) {
+        long nanos = System.nanoTime() - start;
+        if(nanos < this.slowOperationThresholdNanos) {
+            return;
+        }
+        this.slowOperations++;
+        HeapEvents.SlowOperation event = new HeapEvents.SlowOperation();
+        if(event.isEnabled()) {
+            event.heapClass = heap.getClass().getName();
+            event.operation = operation;
+            event.size = size;
+            event.operationDuration = nanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public long getComparisons() {
+        return this.comparisons;
+    }
+
+    @Override
+    public long getMoves() {
+        return this.moves;
+    }
+
+    @Override
+    public long getSifts() {
+        return this.sifts;
+    }
+
+    @Override
+    public long getSiftLevels() {
+        return this.siftLevels;
+    }
+
+    @Override
+    public int getMaxSiftDepth() {
+        return this.maxSiftDepth;
+    }
+
+    @Override
+    public double getAverageSiftDepth() {
+        long s = this.sifts;
+        return s==0 ? 0 : (double) this.siftLevels / s;
+    }
+
+    @Override
+    public long getResizes() {
+        return this.resizes;
+    }
+
+    @Override
+    public long getResizeNanos() {
+        return this.resizeNanos;
+    }
+
+    @Override
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    @Override
+    public long getSlowOperations() {
+        return this.slowOperations;
+    }
+
+    @Override
+    public long getSlowOperationThresholdNanos() {
+        return this.slowOperationThresholdNanos;
+    }
+
+    @Override
+    public void setSlowOperationThresholdNanos(long nanos) {
+        if(nanos < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.slowOperationThresholdNanos = nanos;
+    }
+
+    @Override
+    public void reset() {
+        this.comparisons = 0;
+        this.moves = 0;
+        this.sifts = 0;
+        this.siftLevels = 0;
+        this.maxSiftDepth = 0;
+        this.resizes = 0;
+        this.resizeNanos = 0;
+        this.slowOperations = 0;
+    }
+
+    /**
+     * Register with the platform MBean server as
+     * com.beardfish.heap:type=HeapStats,name=&lt;name&gt;
+     * @param name - identifies the heap
+     * @return the name it was registered under
+     * @throws IllegalStateException if the registration fails
+     */
+    public synchronized ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("com.beardfish.heap:type=HeapStats,name=" + ObjectName.quote(name));
+            this.unregister();
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Remove the registration made by register, if any
+     */
+    public synchronized void unregister() {
+        if(this.objectName==null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+        } catch (JMException e) {
+            /* already gone */
+        }
+        this.objectName = null;
+    }
+
+    @Override
+    public String toString() {
+        return "HeapStats[comparisons=" + this.comparisons + ", moves=" + this.moves + ", sifts=" + this.sifts
+                + ", averageSiftDepth=" + this.getAverageSiftDepth() + ", maxSiftDepth=" + this.maxSiftDepth
+                + ", resizes=" + this.resizes + ", slowOperations=" + this.slowOperations + "]";
+    }
+
+}
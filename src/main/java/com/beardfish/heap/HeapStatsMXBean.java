@@ -0,0 +1,71 @@
+package com.beardfish.heap;
+
+/**
+ * Management interface of {@link HeapStats}, every attribute is read from the
+ * live counters so each call returns a fresh snapshot
+ *
+ * @author Christian
+ */
+
+public interface HeapStatsMXBean {
+
+    /**
+     * @return comparisons of two elements
+     */
+    long getComparisons();
+
+    /**
+     * @return element stores into the heap array while sifting
+     */
+    long getMoves();
+
+    /**
+     * @return percolation passes, a bottom-up removal counts as two
+     */
+    long getSifts();
+
+    /**
+     * @return levels travelled by all sifts together
+     */
+    long getSiftLevels();
+
+    /**
+     * @return the most levels travelled by a single sift
+     */
+    int getMaxSiftDepth();
+
+    /**
+     * @return levels travelled per sift
+     */
+    double getAverageSiftDepth();
+
+    /**
+     * @return the number of times the backing array was grown
+     */
+    long getResizes();
+
+    /**
+     * @return nanoseconds spent growing the backing array
+     */
+    long getResizeNanos();
+
+    /**
+     * @return the capacity after the last resize
+     */
+    int getCapacity();
+
+    /**
+     * @return timed operations that took at least the slow operation threshold
+     */
+    long getSlowOperations();
+
+    long getSlowOperationThresholdNanos();
+
+    void setSlowOperationThresholdNanos(long nanos);
+
+    /**
+     * Zero every counter
+     */
+    void reset();
+
+}
@@ -0,0 +1,316 @@
+package com.beardfish.heap;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+/**
+ * Indexed MinPriorityQueue where every entry is identified by a caller supplied
+ * id in the range [0, capacity). The heap stores ids and the position of every id
+ * is kept in a primitive int[] so decreaseKey, increaseKey, changePriority and
+ * remove run in O(log n) without hashing or allocating.
+ *
+ * Keys are ordered by their natural ordering or by the comparator provided at
+ * construction time.
+ *
+ * @author Christian
+ *
+ * @param <E>
+ *            - the key (priority) stored for each id
+ */
+
+public class IndexedMinPriorityQueue<E> {
+
+    // instance variables
+    private final Comparator<? super E> comparator;
+    // keys indexed by id
+    private final Object[] keys;
+    // heap of ids
+    private final int[] heap;
+    // position of each id in the heap or -1 if the id is not queued
+    private final int[] positions;
+    private int size = 0;
+
+    public IndexedMinPriorityQueue(int capacity) {
+        this(capacity, null);
+    }
+
+    public IndexedMinPriorityQueue(int capacity, Comparator<? super E> comparator) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.keys = new Object[capacity];
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        Arrays.fill(this.positions, -1);
+        this.comparator = comparator;
+    }
+
+    /**
+     * Inserts the id with the given key
+     * @param id - the id of the entry
+     * @param key - the priority of the entry
+     * @return true
+     * @throws IllegalArgumentException if the id is out of range or already queued
+     */
+    public boolean offer(int id, E key) {
+        checkId(id);
+        if(key==null) {
+            throw new NullPointerException();
+        }
+        if(this.positions[id]!=-1) {
+            throw new IllegalArgumentException("id " + id + " is already queued");
+        }
+        this.keys[id] = key;
+        int i = this.size++;
+        this.percolateUp(i, id);
+        return true;
+    }
+
+    /**
+     * @return the id at the head of the queue
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public int peekId() {
+        if(this.size==0) {
+            throw new NoSuchElementException();
+        }
+        return this.heap[0];
+    }
+
+    /**
+     * @return the key at the head of the queue or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E peekKey() {
+        if(this.size==0) {
+            return null;
+        }
+        return (E) this.keys[this.heap[0]];
+    }
+
+    /**
+     * Retrieves and removes the head of the queue
+     * @return the id with the smallest key
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public int pollId() {
+        if(this.size==0) {
+            throw new NoSuchElementException();
+        }
+        int id = this.heap[0];
+        this.removeAt(0);
+        return id;
+    }
+
+    /**
+     * @param id
+     * @return true if the id is currently queued
+     */
+    public boolean contains(int id) {
+        checkId(id);
+        return this.positions[id]!=-1;
+    }
+
+    /**
+     * @param id
+     * @return the key of a queued id or null if the id is not queued
+     */
+    @SuppressWarnings("unchecked")
+    public E keyOf(int id) {
+        checkId(id);
+        return this.positions[id]==-1 ? null : (E) this.keys[id];
+    }
+
+    /**
+     * Lower the key of a queued id
+     * @param id - the id of the entry
+     * @param key - a key less than or equal to the current key
+     * @throws IllegalArgumentException if the new key is greater than the current key
+     * @throws NoSuchElementException if the id is not queued
+     */
+    @SuppressWarnings("unchecked")
+    public void decreaseKey(int id, E key) {
+        int index = this.positionOf(id, key);
+        if(this.compare(key, (E) this.keys[id])>0) {
+            throw new IllegalArgumentException("key is greater than the current key");
+        }
+        this.keys[id] = key;
+        this.percolateUp(index, id);
+    }
+
+    /**
+     * Raise the key of a queued id
+     * @param id - the id of the entry
+     * @param key - a key greater than or equal to the current key
+     * @throws IllegalArgumentException if the new key is less than the current key
+     * @throws NoSuchElementException if the id is not queued
+     */
+    @SuppressWarnings("unchecked")
+    public void increaseKey(int id, E key) {
+        int index = this.positionOf(id, key);
+        if(this.compare(key, (E) this.keys[id])<0) {
+            throw new IllegalArgumentException("key is less than the current key");
+        }
+        this.keys[id] = key;
+        this.percolateDown(index, id);
+    }
+
+    /**
+     * Change the key of a queued id in either direction
+     * @param id - the id of the entry
+     * @param key - the new key
+     * @throws NoSuchElementException if the id is not queued
+     */
+    @SuppressWarnings("unchecked")
+    public void changePriority(int id, E key) {
+        int index = this.positionOf(id, key);
+        int c = this.compare(key, (E) this.keys[id]);
+        this.keys[id] = key;
+        if(c<0) {
+            this.percolateUp(index, id);
+        } else if(c>0) {
+            this.percolateDown(index, id);
+        }
+    }
+
+    /**
+     * Remove the id if it is queued
+     * @param id
+     * @return true if the id was queued; false otherwise
+     */
+    public boolean remove(int id) {
+        checkId(id);
+        int index = this.positions[id];
+        if(index==-1) {
+            return false;
+        }
+        this.removeAt(index);
+        return true;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size==0;
+    }
+
+    /**
+     * @return the number of ids this queue can hold
+     */
+    public int capacity() {
+        return this.heap.length;
+    }
+
+    public Comparator<? super E> comparator() {
+        return this.comparator;
+    }
+
+    public void clear() {
+        for(int i = 0; i< this.size; i++) {
+            int id = this.heap[i];
+            this.positions[id] = -1;
+            this.keys[id] = null;
+        }
+        this.size=0;
+    }
+
+    private void checkId(int id) {
+        if(id<0 || id>=this.heap.length) {
+            throw new IllegalArgumentException("id " + id + " is out of range");
+        }
+    }
+
+    private int positionOf(int id, E key) {
+        checkId(id);
+        if(key==null) {
+            throw new NullPointerException();
+        }
+        int index = this.positions[id];
+        if(index==-1) {
+            throw new NoSuchElementException("id " + id + " is not queued");
+        }
+        return index;
+    }
+
+    /**
+     * Remove the id at the specified heap index
+     * @param index
+     */
+    private void removeAt(int index) {
+        int id = this.heap[index];
+        int s = --this.size;
+        this.positions[id] = -1;
+        this.keys[id] = null;
+        if(s!=index) {
+            /* place the last id at the index of the removed id */
+            int moved = this.heap[s];
+            this.percolateDown(index, moved);
+            if(this.heap[index]==moved) {
+                this.percolateUp(index, moved);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        if(this.comparator!=null) {
+            return this.comparator.compare(a, b);
+        }
+        return ((Comparable<? super E>) a).compareTo(b);
+    }
+
+    /**
+     * Moves the hole at index up until the parent key is less than or equal to
+     * the key of id
+     * @param index
+     * @param id
+     */
+    @SuppressWarnings("unchecked")
+    private void percolateUp(int index, int id) {
+        E key = (E) this.keys[id];
+        while(index>0) {
+            int p = (index-1) >>> 1;
+            int parent = this.heap[p];
+            if(this.compare(key, (E) this.keys[parent])>=0) {
+                break;
+            }
+            this.heap[index] = parent;
+            this.positions[parent] = index;
+            index = p;
+        }
+        this.heap[index] = id;
+        this.positions[id] = index;
+    }
+
+    /**
+     * Moves the hole at index down, pulling up the smaller child, until the key
+     * of id fits
+     * @param index
+     * @param id
+     */
+    @SuppressWarnings("unchecked")
+    private void percolateDown(int index, int id) {
+        E key = (E) this.keys[id];
+        int half = this.size >>> 1;
+        while(index<half) {
+            int child = (index<<1)+1;
+            int c = this.heap[child];
+            int right = child+1;
+            if(right<this.size && this.compare((E) this.keys[this.heap[right]], (E) this.keys[c])<0) {
+                c = this.heap[child = right];
+            }
+            if(this.compare(key, (E) this.keys[c])<=0) {
+                break;
+            }
+            this.heap[index] = c;
+            this.positions[c] = index;
+            index = child;
+        }
+        this.heap[index] = id;
+        this.positions[id] = index;
+    }
+
+}
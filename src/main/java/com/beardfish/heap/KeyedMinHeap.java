@@ -0,0 +1,317 @@
+package com.beardfish.heap;
+
+import java.util.*;
+
+/**
+ * Array heap ordered by a long key kept in a long[] parallel to the element
+ * array, the sifting shared by {@link LongKeyMinHeap} and {@link DoubleKeyMinHeap}.
+ * Subclasses turn an element into its key once, on offer; sifting then compares
+ * primitives only. Sifting follows {@link MinHeap}: a configurable arity, a hole
+ * that is moved instead of swapping and bottom-up deletion on poll.
+ *
+ * @author Christian
+ *
+ * @param <E>
+ *            - the element stored in the heap
+ */
+
+abstract class KeyedMinHeap<E> extends AbstractQueue<E> {
+
+    // number of children per node is 1 << arityShift
+    private final int arityShift;
+    private Object[] queue;
+    // key of every element aligned with queue
+    private long[] keys;
+    private int size = 0;
+    // modification count for the iterator
+    private int modCount = 0;
+
+    /**
+     * @param initialCapacity
+     * @param arity - the number of children per node, a power of two between 2 and 64
+     */
+    KeyedMinHeap(int initialCapacity, int arity) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.arityShift = MinHeap.arityShift(arity);
+        this.queue = new Object[initialCapacity];
+        this.keys = new long[initialCapacity];
+    }
+
+    /**
+     * @param element
+     * @return the key of the element, smaller keys are polled first
+     */
+    abstract long keyOf(E element);
+
+    @Override
+    public boolean offer(E object) {
+        if(object==null) {
+            throw new NullPointerException();
+        }
+        long key = this.keyOf(object);
+        this.modCount++;
+        int i = this.size;
+        /* check the capacity of the array */
+        if(i>=this.queue.length) {
+            grow(i+1);
+        }
+        this.size = i + 1;
+        percolateUp(i, object, key);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        return this.size==0 ? null : (E) this.queue[0];
+    }
+
+    /**
+     * @return the key of the head
+     * @throws NoSuchElementException if the heap is empty
+     */
+    long headKey() {
+        if(this.size==0) {
+            throw new NoSuchElementException();
+        }
+        return this.keys[0];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        if(this.size==0) {
+            return null;
+        }
+        E head = (E) this.queue[0];
+        this.removeAt(0);
+        return head;
+    }
+
+    /**
+     * Remove the particular object if it exists
+     * @param o - the object to remove
+     * @return true if it exists; false otherwise
+     */
+    @Override
+    public boolean remove(Object o) {
+        if(o!=null) {
+            for(int i = 0; i < this.size; i++) {
+                if(o.equals(this.queue[i])) {
+                    this.removeAt(i);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the number of children per node
+     */
+    public int arity() {
+        return 1 << this.arityShift;
+    }
+
+    @Override
+    public void clear() {
+        this.modCount++;
+        for(int i = 0; i < this.size; i++) {
+            this.queue[i] = null;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Grow the heap by the integer specified
+     * @param minCapacity the minimum capacity to increase by
+     */
+    public void grow(int minCapacity) {
+        if(minCapacity<0) {
+            throw new OutOfMemoryError();
+        }
+        int oldCapacity = this.queue.length;
+        int newCapacity = ((oldCapacity<64)) ?
+                ((oldCapacity+1) * 2) :
+                ((oldCapacity/2) * 3);
+        if(newCapacity<0) {
+            newCapacity = Integer.MAX_VALUE;
+        }
+        if(newCapacity < minCapacity) {
+            newCapacity = minCapacity;
+        }
+        this.queue = Arrays.copyOf(this.queue,newCapacity);
+        this.keys = Arrays.copyOf(this.keys,newCapacity);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return Arrays.copyOf(this.queue, this.size);
+    }
+
+    /* iterator provides no guarantees of the order of iteration */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(this.toArray());
+    }
+
+    /**
+     * Remove the element at index and fill the hole with the last element
+     * using bottom-up deletion, as in {@link MinHeap}
+     * @param index
+     * @return the last element if it had to move above index (so an iterator
+     *         that already passed index would miss it); null otherwise
+     */
+    @SuppressWarnings("unchecked")
+    private E removeAt(int index) {
+        this.modCount++;
+        int s = --this.size;
+        Object[] q = this.queue;
+        long[] k = this.keys;
+        Object moved = q[s];
+        long key = k[s];
+        q[s] = null;
+        if(s==index) {
+            return null;
+        }
+        int hole = index;
+        int child;
+        while((child = this.getSmallerChild(hole))!=-1) {
+            q[hole] = q[child];
+            k[hole] = k[child];
+            hole = child;
+        }
+        return percolateUp(hole, moved, key) < index ? (E) moved : null;
+    }
+
+    /**
+     * Moves the hole at index up until the parent key is less than or equal to key
+     * @param index
+     * @param element
+     * @param key
+     * @return the index the element was placed at
+     */
+    private int percolateUp(int index, Object element, long key) {
+        Object[] q = this.queue;
+        long[] k = this.keys;
+        while(index>0) {
+            int p = (index-1) >>> this.arityShift;
+            long parent = k[p];
+            if(key>=parent) {
+                break;
+            }
+            q[index] = q[p];
+            k[index] = parent;
+            index = p;
+        }
+        q[index] = element;
+        k[index] = key;
+        return index;
+    }
+
+    /**
+     * @param index
+     * @return index of the child with the smallest key or -1 if no children
+     */
+    private int getSmallerChild(int index) {
+        long first = ((long) index << this.arityShift) + 1;
+        if(first>=this.size) {
+            return -1;
+        }
+        long[] k = this.keys;
+        int c = (int) first;
+        int end = (int) Math.min(first + (1 << this.arityShift), this.size);
+        long smallest = k[c];
+        for(int i = c + 1; i < end; i++) {
+            if(k[i]<smallest) {
+                smallest = k[c = i];
+            }
+        }
+        return c;
+    }
+
+    private final class Itr implements Iterator<E> {
+
+        private int cursor = 0;
+
+        /* keeps track of the index of the cursor before a call to next() */
+        private int lastRet = -1;
+
+        /* keeps track of the last element returned by the forget me not */
+        private E lastRetElt = null;
+
+        private ArrayDeque<E> forgetMeNot = null;
+
+        private int expectedModCount = KeyedMinHeap.this.modCount;
+
+        @Override
+        public boolean hasNext() {
+            return this.cursor < KeyedMinHeap.this.size || (this.forgetMeNot!=null && !this.forgetMeNot.isEmpty());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if(this.expectedModCount!=KeyedMinHeap.this.modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if(this.cursor < KeyedMinHeap.this.size) {
+                return (E) KeyedMinHeap.this.queue[this.lastRet = this.cursor++];
+            }
+            /* need to make sure that if there are removals that elements are not forgotten */
+            if(this.forgetMeNot!=null) {
+                this.lastRet = -1;
+                this.lastRetElt = this.forgetMeNot.poll();
+                if(this.lastRetElt!=null) {
+                    return this.lastRetElt;
+                }
+            }
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        public void remove() {
+            if(this.expectedModCount!=KeyedMinHeap.this.modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if(this.lastRet!=-1) {
+                E moved = KeyedMinHeap.this.removeAt(this.lastRet);
+                this.lastRet = -1;
+                if(moved==null) {
+                    this.cursor--;
+                } else {
+                    if(this.forgetMeNot==null) {
+                        this.forgetMeNot = new ArrayDeque<E>();
+                    }
+                    /* save for later iteration */
+                    this.forgetMeNot.add(moved);
+                }
+            } else if(this.lastRetElt!=null) {
+                Object[] q = KeyedMinHeap.this.queue;
+                for(int i = 0; i < KeyedMinHeap.this.size; i++) {
+                    if(q[i]==this.lastRetElt) {
+                        KeyedMinHeap.this.removeAt(i);
+                        break;
+                    }
+                }
+                this.lastRetElt = null;
+            } else {
+                throw new IllegalStateException();
+            }
+            this.expectedModCount = KeyedMinHeap.this.modCount;
+        }
+    }
+
+}
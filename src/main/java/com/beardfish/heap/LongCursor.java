@@ -0,0 +1,22 @@
+package com.beardfish.heap;
+
+/**
+ * Forward only cursor over primitive longs, read without boxing
+ *
+ * @author Christian
+ */
+
+public interface LongCursor {
+
+    /**
+     * Move to the next value
+     * @return true if there is a value; false if the cursor is exhausted
+     */
+    boolean advance();
+
+    /**
+     * @return the current value, only valid after advance returned true
+     */
+    long value();
+
+}
@@ -0,0 +1,65 @@
+package com.beardfish.heap;
+
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * MinHeap ordered by a long priority extracted from every element. The key is
+ * read once on offer and kept in a long[] parallel to the element array, so
+ * sifting compares primitives only: no comparator call and no element is
+ * dereferenced until it is returned. Sifting follows {@link MinHeap}: a
+ * configurable arity, a hole that is moved instead of swapping and bottom-up
+ * deletion on poll.
+ *
+ * The key is not read again, an element whose key changes while it is in the
+ * heap has to be removed and offered again. The iterator provides no
+ * guarantees of the order of iteration.
+ *
+ * @author Christian
+ *
+ * @param <E>
+ *            - the element stored in the heap
+ */
+
+public class LongKeyMinHeap<E> extends KeyedMinHeap<E> {
+
+    // static variable
+    private static final int DEFAULT_INITIAL_CAPACITY = 12;
+    // instance variables
+    private final ToLongFunction<? super E> keyExtractor;
+
+    public LongKeyMinHeap(ToLongFunction<? super E> keyExtractor) {
+        this(DEFAULT_INITIAL_CAPACITY, keyExtractor, MinHeap.BINARY);
+    }
+
+    public LongKeyMinHeap(int initialCapacity, ToLongFunction<? super E> keyExtractor) {
+        this(initialCapacity, keyExtractor, MinHeap.BINARY);
+    }
+
+    /**
+     * @param initialCapacity
+     * @param keyExtractor - reads the priority of an element, smallest first
+     * @param arity - the number of children per node, a power of two between 2 and 64
+     */
+    public LongKeyMinHeap(int initialCapacity, ToLongFunction<? super E> keyExtractor, int arity) {
+        super(initialCapacity, arity);
+        if(keyExtractor==null) {
+            throw new NullPointerException();
+        }
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * @return the key of the head
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public long peekKey() {
+        return this.headKey();
+    }
+
+    @Override
+    long keyOf(E element) {
+        return this.keyExtractor.applyAsLong(element);
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.beardfish.heap;
+
+/**
+ * Merges sorted {@link LongCursor}s into a single sorted cursor using a loser
+ * tree, the primitive counterpart of {@link MergingIterator}. Values are never
+ * boxed and each value costs ceil(log2 K) comparisons for K sources.
+ *
+ * @author Christian
+ */
+
+public class LongMergingCursor implements LongCursor {
+
+    // instance variables
+    private final LongCursor[] sources;
+    // current head of every source
+    private final long[] heads;
+    private final boolean[] exhausted;
+    // tree[0] holds the overall winner, tree[1..k-1] the loser of each match
+    private final int[] tree;
+    private long value;
+    private boolean started = false;
+
+    /**
+     * @param sources - cursors over ascending values
+     */
+    public LongMergingCursor(LongCursor... sources) {
+        this.sources = sources.clone();
+        int k = this.sources.length;
+        this.heads = new long[k];
+        this.exhausted = new boolean[k];
+        this.tree = new int[Math.max(k, 1)];
+        for(int i = 0; i < k; i++) {
+            this.fetch(i);
+        }
+        if(k==0) {
+            this.tree[0] = -1;
+        } else {
+            this.build();
+        }
+    }
+
+    @Override
+    public boolean advance() {
+        int winner = this.tree[0];
+        if(this.started && winner!=-1 && !this.exhausted[winner]) {
+            /* the previous value is consumed now so value() stays valid until the next advance */
+            this.fetch(winner);
+            this.replay(winner);
+            winner = this.tree[0];
+        }
+        this.started = true;
+        if(winner==-1 || this.exhausted[winner]) {
+            return false;
+        }
+        this.value = this.heads[winner];
+        return true;
+    }
+
+    @Override
+    public long value() {
+        return this.value;
+    }
+
+    private void fetch(int source) {
+        LongCursor cursor = this.sources[source];
+        if(cursor.advance()) {
+            this.heads[source] = cursor.value();
+        } else {
+            this.exhausted[source] = true;
+        }
+    }
+
+    /**
+     * Play every match bottom up. Leaf i sits at position k+i
+     */
+    private void build() {
+        int k = this.sources.length;
+        int[] winners = new int[2 * k];
+        for(int i = 0; i < k; i++) {
+            winners[k + i] = i;
+        }
+        for(int node = k - 1; node >= 1; node--) {
+            int a = winners[2 * node];
+            int b = winners[2 * node + 1];
+            if(this.beats(a, b)) {
+                winners[node] = a;
+                this.tree[node] = b;
+            } else {
+                winners[node] = b;
+                this.tree[node] = a;
+            }
+        }
+        this.tree[0] = k==1 ? 0 : winners[1];
+    }
+
+    /**
+     * Replay the matches on the path from the leaf of source to the root
+     * @param source
+     */
+    private void replay(int source) {
+        int[] t = this.tree;
+        int candidate = source;
+        for(int node = (this.sources.length + source) >>> 1; node >= 1; node >>>= 1) {
+            if(this.beats(t[node], candidate)) {
+                int loser = candidate;
+                candidate = t[node];
+                t[node] = loser;
+            }
+        }
+        t[0] = candidate;
+    }
+
+    /**
+     * @return true if the head of source a comes before the head of source b.
+     *         Exhausted sources lose every match and ties go to the lower source
+     */
+    private boolean beats(int a, int b) {
+        if(this.exhausted[a]) {
+            return false;
+        }
+        if(this.exhausted[b]) {
+            return true;
+        }
+        long x = this.heads[a];
+        long y = this.heads[b];
+        return x < y || (x == y && a < b);
+    }
+
+}
@@ -0,0 +1,515 @@
+package com.beardfish.heap;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Durable MinHeap of fixed width records (a long priority followed by a payload)
+ * that lives in a memory mapped file. Reopening the file gives back the heap as
+ * it was without rebuilding it and the operating system decides which pages stay
+ * resident.
+ *
+ * The file starts with a header page holding the format version, arity, payload
+ * width, capacity, size and a small redo log. Files are written little endian on
+ * every platform, so they can be moved between machines. Every offer or poll
+ * first works out which records it will write, stores those writes in the redo log, marks the log
+ * as pending, applies the writes and only then publishes the new size and clears
+ * the mark. A heap reopened after a crash in the middle of an operation replays
+ * the pending log, so the file always holds the heap as it was before or after a
+ * complete operation.
+ *
+ * With sync enabled every step is forced to the storage device in order, which
+ * also survives power loss. Without it the writes reach the page cache only, which
+ * survives the process crashing but not the machine; call flush to force them.
+ *
+ * Records are ordered by their key only, sifting follows {@link MinHeap}.
+ * Instances are not thread safe. The file is locked exclusively while a heap has
+ * it open, so a second heap, in this or another process, cannot open it.
+ *
+ * @author Christian
+ */
+
+public class MappedMinHeap implements Closeable {
+
+    // file format
+    private static final int MAGIC = 0x42464D48;
+    public static final int VERSION = 1;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int ARITY_OFFSET = 8;
+    private static final int PAYLOAD_WIDTH_OFFSET = 12;
+    private static final int CAPACITY_OFFSET = 16;
+    private static final int SIZE_OFFSET = 24;
+    private static final int LOG_STATE_OFFSET = 28;
+    private static final int LOG_COUNT_OFFSET = 32;
+    private static final int LOG_SIZE_OFFSET = 36;
+    private static final int LOG_OFFSET = 64;
+    private static final int PAGE_SIZE = 4096;
+    // log states
+    private static final int LOG_CLEAN = 0;
+    private static final int LOG_PENDING = 1;
+    // every multi-byte value in the file
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    // a sift writes at most one record per level plus the sifted record
+    private static final int MAX_LOG_ENTRIES = 33;
+    // records per mapped chunk are 1 << CHUNK_SHIFT
+    private static final int CHUNK_SHIFT = 16;
+    // canonical paths of the files open in this virtual machine
+    private static final Set<String> OPEN_FILES = ConcurrentHashMap.newKeySet();
+    // instance variables
+    private final String path;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer header;
+    private final RecordBuffer records;
+    private final int headerSize;
+    private final int arityShift;
+    private final int entrySize;
+    private final boolean sync;
+    private int size;
+    private int logCount;
+
+    /**
+     * Open the heap stored in an existing file
+     * @param file
+     * @param sync - force every operation to the storage device
+     * @throws IOException if the file cannot be read or is not a heap file
+     */
+    public MappedMinHeap(File file, boolean sync) throws IOException {
+        this(file, -1, -1, sync);
+    }
+
+    /**
+     * Open the heap stored in the file, creating an empty heap if the file does not
+     * exist or is empty
+     * @param file
+     * @param payloadWidth - the number of payload bytes stored with every key
+     * @param arity - the number of children per node, a power of two between 2 and 64
+     * @param sync - force every operation to the storage device
+     * @throws IOException if the file cannot be read, holds a heap with another layout
+     *                     or is locked by another heap
+     */
+    public MappedMinHeap(File file, int payloadWidth, int arity, boolean sync) throws IOException {
+        this.sync = sync;
+        /* closing any channel may drop every lock this virtual machine holds on the
+           file, so a file already open here is refused before it is opened again */
+        this.path = file.getCanonicalPath();
+        if(!OPEN_FILES.add(this.path)) {
+            throw new IOException(file + " is locked by another heap");
+        }
+        try {
+            this.file = new RandomAccessFile(file, "rw");
+        } catch (IOException e) {
+            OPEN_FILES.remove(this.path);
+            throw e;
+        }
+        try {
+            this.channel = this.file.getChannel();
+            FileLock locked;
+            try {
+                locked = this.channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                locked = null;
+            }
+            if(locked==null) {
+                throw new IOException(file + " is locked by another heap");
+            }
+            this.lock = locked;
+            boolean create = this.channel.size()==0;
+            if(create) {
+                if(payloadWidth < 0) {
+                    throw new IOException(file + " is empty");
+                }
+                this.arityShift = MinHeap.arityShift(arity);
+            } else {
+                ByteBuffer fixed = ByteBuffer.allocate(LOG_OFFSET).order(ORDER);
+                this.channel.read(fixed, 0);
+                if(fixed.getInt(MAGIC_OFFSET)!=MAGIC) {
+                    throw new IOException(file + " is not a heap file");
+                }
+                int version = fixed.getInt(VERSION_OFFSET);
+                if(version!=VERSION) {
+                    throw new IOException(file + " has unsupported version " + version);
+                }
+                int storedArity = fixed.getInt(ARITY_OFFSET);
+                int storedWidth = fixed.getInt(PAYLOAD_WIDTH_OFFSET);
+                if((arity!=-1 && arity!=storedArity) || (payloadWidth!=-1 && payloadWidth!=storedWidth)) {
+                    throw new IOException(file + " holds a heap with arity " + storedArity
+                            + " and payload width " + storedWidth);
+                }
+                payloadWidth = storedWidth;
+                this.arityShift = MinHeap.arityShift(storedArity);
+            }
+            /* a log entry is the target index padded to 8 bytes followed by the record */
+            this.entrySize = 8 + ((8 + payloadWidth + 7) & ~7);
+            this.headerSize = roundToPage(LOG_OFFSET + MAX_LOG_ENTRIES * this.entrySize);
+            final long base = this.headerSize;
+            this.header = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, this.headerSize);
+            this.header.order(ORDER);
+            this.records = new RecordBuffer(payloadWidth, CHUNK_SHIFT, ORDER) {
+                @Override
+                ByteBuffer allocateChunk(int index, int bytes) {
+                    try {
+                        return MappedMinHeap.this.channel.map(FileChannel.MapMode.READ_WRITE,
+                                base + (long) index * bytes, bytes);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("cannot map " + bytes + " bytes", e);
+                    }
+                }
+
+                /* the records are already in the file, map the larger region over them */
+                @Override
+                ByteBuffer resizeChunk(ByteBuffer chunk, int used, int bytes) {
+                    return this.allocateChunk(0, bytes);
+                }
+            };
+            if(create) {
+                this.header.putInt(VERSION_OFFSET, VERSION);
+                this.header.putInt(ARITY_OFFSET, 1 << this.arityShift);
+                this.header.putInt(PAYLOAD_WIDTH_OFFSET, payloadWidth);
+                this.header.putInt(SIZE_OFFSET, 0);
+                this.header.putInt(LOG_STATE_OFFSET, LOG_CLEAN);
+                this.records.ensureCapacity(1);
+                this.header.putLong(CAPACITY_OFFSET, this.records.capacity());
+                /* the magic goes last so a half created file is never taken for a heap */
+                this.force();
+                this.header.putInt(MAGIC_OFFSET, MAGIC);
+                this.force();
+                this.size = 0;
+            } else {
+                this.size = this.header.getInt(SIZE_OFFSET);
+                this.records.ensureCapacity(Math.max(1, Math.max(this.size, this.header.getInt(LOG_SIZE_OFFSET))));
+                if(this.header.getInt(LOG_STATE_OFFSET)==LOG_PENDING) {
+                    this.logCount = this.header.getInt(LOG_COUNT_OFFSET);
+                    this.commit();
+                }
+            }
+        } catch (IOException e) {
+            this.file.close();
+            OPEN_FILES.remove(this.path);
+            throw e;
+        } catch (RuntimeException e) {
+            this.file.close();
+            OPEN_FILES.remove(this.path);
+            throw e;
+        }
+    }
+
+    private static int roundToPage(int bytes) {
+        return (bytes + PAGE_SIZE - 1) & ~(PAGE_SIZE - 1);
+    }
+
+    /**
+     * Inserts a record whose payload starts with the given long
+     * @param key - the priority
+     * @param payload - stored in the first 8 payload bytes
+     * @return true
+     * @throws IllegalStateException if the payload is narrower than 8 bytes
+     */
+    public boolean offer(long key, long payload) {
+        if(this.records.payloadWidth < 8) {
+            throw new IllegalStateException("payload is narrower than a long");
+        }
+        int entry = this.stageOffer(key);
+        this.header.putLong(entry + 16, payload);
+        for(int i = 8; i < this.records.payloadWidth; i += 8) {
+            this.header.putLong(entry + 16 + i, 0L);
+        }
+        this.commitOffer();
+        return true;
+    }
+
+    /**
+     * Inserts a record
+     * @param key - the priority
+     * @param payload - at most payloadWidth bytes, shorter payloads are zero padded
+     * @return true
+     */
+    public boolean offer(long key, byte[] payload) {
+        if(payload.length > this.records.payloadWidth) {
+            throw new IllegalArgumentException("payload is wider than " + this.records.payloadWidth + " bytes");
+        }
+        int entry = this.stageOffer(key);
+        for(int i = 0; i < this.records.stride - 8; i++) {
+            this.header.put(entry + 16 + i, i < payload.length ? payload[i] : 0);
+        }
+        this.commitOffer();
+        return true;
+    }
+
+    /**
+     * @return the smallest key
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public long peekKey() {
+        this.checkNotEmpty();
+        return this.records.key(0);
+    }
+
+    /**
+     * @return the first 8 payload bytes of the head as a long
+     * @throws NoSuchElementException if the heap is empty
+     * @throws IllegalStateException if the payload is narrower than 8 bytes
+     */
+    public long peekPayload() {
+        if(this.records.payloadWidth < 8) {
+            throw new IllegalStateException("payload is narrower than a long");
+        }
+        this.checkNotEmpty();
+        return this.records.payloadLong(0, 0);
+    }
+
+    /**
+     * Copy the payload of the head
+     * @param dst - receives up to payloadWidth bytes
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public void peekPayload(byte[] dst) {
+        this.checkNotEmpty();
+        this.records.getPayload(0, dst);
+    }
+
+    /**
+     * Removes the head and returns its payload, read the key with peekKey first
+     * if it is needed
+     * @return the first 8 payload bytes of the removed head as a long
+     * @throws NoSuchElementException if the heap is empty
+     * @throws IllegalStateException if the payload is narrower than 8 bytes
+     */
+    public long pollPayload() {
+        long payload = this.peekPayload();
+        this.removeTop();
+        return payload;
+    }
+
+    /**
+     * Removes the head
+     * @param payloadDst - receives the payload of the head, may be null
+     * @return the key of the removed head
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public long poll(byte[] payloadDst) {
+        long key = this.peekKey();
+        if(payloadDst!=null) {
+            this.records.getPayload(0, payloadDst);
+        }
+        this.removeTop();
+        return key;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size==0;
+    }
+
+    public void clear() {
+        this.logCount = 0;
+        this.header.putInt(LOG_COUNT_OFFSET, 0);
+        this.header.putInt(LOG_SIZE_OFFSET, 0);
+        this.publish();
+    }
+
+    /**
+     * @return the number of payload bytes stored with every key
+     */
+    public int payloadWidth() {
+        return this.records.payloadWidth;
+    }
+
+    /**
+     * @return the number of children per node
+     */
+    public int arity() {
+        return 1 << this.arityShift;
+    }
+
+    /**
+     * Force every change to the storage device
+     */
+    public void flush() {
+        for(int i = 0; i < this.records.chunkCount(); i++) {
+            ((MappedByteBuffer) this.records.chunk(i)).force();
+        }
+        this.header.force();
+    }
+
+    /**
+     * Flush and close the file, which also releases the lock. The heap must not
+     * be used afterwards
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flush();
+        } finally {
+            this.records.release();
+            try {
+                if(this.lock.isValid()) {
+                    this.lock.release();
+                }
+            } finally {
+                this.file.close();
+                OPEN_FILES.remove(this.path);
+            }
+        }
+    }
+
+    private void checkNotEmpty() {
+        if(this.size==0) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    /**
+     * @return the header offset of the k-th log entry
+     */
+    private int entry(int k) {
+        return LOG_OFFSET + k * this.entrySize;
+    }
+
+    /**
+     * Log the parent moves needed to insert key and leave the entry of the new
+     * record, with its key written, for the caller to fill in the payload
+     * @param key
+     * @return the header offset of the new record's log entry
+     */
+    private int stageOffer(long key) {
+        int i = this.size;
+        if(i==Integer.MAX_VALUE) {
+            throw new IllegalStateException("heap is full");
+        }
+        this.records.ensureCapacity((long) i + 1);
+        this.header.putLong(CAPACITY_OFFSET, this.records.capacity());
+        this.logCount = 0;
+        while(i>0) {
+            int p = (i-1) >>> this.arityShift;
+            if(key>=this.records.key(p)) {
+                break;
+            }
+            this.logMove(p, i);
+            i = p;
+        }
+        int entry = this.entry(this.logCount++);
+        this.header.putInt(entry, i);
+        this.header.putLong(entry + 8, key);
+        return entry;
+    }
+
+    private void commitOffer() {
+        this.header.putInt(LOG_SIZE_OFFSET, this.size + 1);
+        this.commit();
+    }
+
+    /**
+     * Remove the head by percolating the last record down from the root. The
+     * moves are computed against the unmodified heap so they can all be logged
+     * before anything is written
+     */
+    private void removeTop() {
+        int s = this.size - 1;
+        this.logCount = 0;
+        if(s>0) {
+            long key = this.records.key(s);
+            int hole = 0;
+            int child;
+            while((child = this.getSmallerChild(hole, s))!=-1) {
+                if(key<=this.records.key(child)) {
+                    break;
+                }
+                this.logMove(child, hole);
+                hole = child;
+            }
+            this.logMove(s, hole);
+        }
+        this.header.putInt(LOG_SIZE_OFFSET, s);
+        this.commit();
+    }
+
+    /**
+     * Append a log entry that copies record from into position to
+     */
+    private void logMove(int from, int to) {
+        int entry = this.entry(this.logCount++);
+        this.header.putInt(entry, to);
+        this.records.save(from, this.header, entry + 8);
+    }
+
+    /**
+     * Mark the staged log as pending, apply it and publish the new size
+     */
+    private void commit() {
+        this.header.putInt(LOG_COUNT_OFFSET, this.logCount);
+        this.force();
+        this.header.putInt(LOG_STATE_OFFSET, LOG_PENDING);
+        this.force();
+        for(int k = 0; k < this.logCount; k++) {
+            int entry = this.entry(k);
+            int to = this.header.getInt(entry);
+            this.records.restore(this.header, entry + 8, to);
+            if(this.sync) {
+                ((MappedByteBuffer) this.records.chunk(to >>> this.records.chunkShift)).force();
+            }
+        }
+        this.publish();
+    }
+
+    /**
+     * Make the logged size the size of the heap and mark the log clean
+     */
+    private void publish() {
+        this.size = this.header.getInt(LOG_SIZE_OFFSET);
+        this.header.putInt(SIZE_OFFSET, this.size);
+        this.header.putInt(LOG_STATE_OFFSET, LOG_CLEAN);
+        this.force();
+    }
+
+    /**
+     * Force the header when running in sync mode
+     */
+    private void force() {
+        if(this.sync) {
+            this.header.force();
+        }
+    }
+
+    /**
+     * @param index
+     * @param size - the number of records in the heap
+     * @return index of the child with the smallest key or -1 if no children
+     */
+    private int getSmallerChild(int index, int size) {
+        long first = ((long) index << this.arityShift) + 1;
+        if(first>=size) {
+            return -1;
+        }
+        RecordBuffer r = this.records;
+        int c = (int) first;
+        int end = (int) Math.min(first + (1 << this.arityShift), size);
+        long smallest = r.key(c);
+        for(int i = c + 1; i < end; i++) {
+            long k = r.key(i);
+            if(k<smallest) {
+                smallest = k;
+                c = i;
+            }
+        }
+        return c;
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.beardfish.heap;
+
+import java.util.*;
+
+/**
+ * Merges sorted iterators into a single sorted iterator using a loser tree
+ * (tournament tree). Every internal node of the tree remembers the source that
+ * lost the match played there, so after the winner is consumed only the path
+ * from its leaf to the root is replayed: exactly ceil(log2 K) comparisons per
+ * element for K sources and no allocation per element.
+ *
+ * Equal elements are returned in the order of their sources. Each source must
+ * be sorted by the same ordering, remove is not supported.
+ *
+ * @author Christian
+ *
+ * @param <E>
+ *            - the element being merged
+ */
+
+public class MergingIterator<E> implements Iterator<E> {
+
+    // instance variables
+    private final Comparator<? super E> comparator;
+    private final Iterator<? extends E>[] sources;
+    // current head of every source
+    private final Object[] heads;
+    private final boolean[] exhausted;
+    // tree[0] holds the overall winner, tree[1..k-1] the loser of each match
+    private final int[] tree;
+
+    public MergingIterator(Collection<? extends Iterator<? extends E>> sources) {
+        this(sources, null);
+    }
+
+    /**
+     * @param sources - iterators sorted by the comparator
+     * @param comparator - the ordering or null for the natural ordering
+     */
+    @SuppressWarnings("unchecked")
+    public MergingIterator(Collection<? extends Iterator<? extends E>> sources, Comparator<? super E> comparator) {
+        this.comparator = comparator;
+        this.sources = (Iterator<? extends E>[]) sources.toArray(new Iterator<?>[sources.size()]);
+        int k = this.sources.length;
+        this.heads = new Object[k];
+        this.exhausted = new boolean[k];
+        this.tree = new int[Math.max(k, 1)];
+        for(int i = 0; i < k; i++) {
+            this.fetch(i);
+        }
+        if(k==0) {
+            this.tree[0] = -1;
+        } else {
+            this.build();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        int winner = this.tree[0];
+        return winner!=-1 && !this.exhausted[winner];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E next() {
+        if(!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int winner = this.tree[0];
+        E head = (E) this.heads[winner];
+        this.fetch(winner);
+        this.replay(winner);
+        return head;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Load the next element of a source
+     * @param source
+     */
+    private void fetch(int source) {
+        Iterator<? extends E> it = this.sources[source];
+        if(it.hasNext()) {
+            E e = it.next();
+            if(e==null) {
+                throw new NullPointerException();
+            }
+            this.heads[source] = e;
+        } else {
+            this.heads[source] = null;
+            this.exhausted[source] = true;
+        }
+    }
+
+    /**
+     * Play every match bottom up. Leaf i sits at position k+i
+     */
+    private void build() {
+        int k = this.sources.length;
+        int[] winners = new int[2 * k];
+        for(int i = 0; i < k; i++) {
+            winners[k + i] = i;
+        }
+        for(int node = k - 1; node >= 1; node--) {
+            int a = winners[2 * node];
+            int b = winners[2 * node + 1];
+            if(this.beats(a, b)) {
+                winners[node] = a;
+                this.tree[node] = b;
+            } else {
+                winners[node] = b;
+                this.tree[node] = a;
+            }
+        }
+        this.tree[0] = k==1 ? 0 : winners[1];
+    }
+
+    /**
+     * Replay the matches on the path from the leaf of source to the root
+     * @param source
+     */
+    private void replay(int source) {
+        int[] t = this.tree;
+        int candidate = source;
+        for(int node = (this.sources.length + source) >>> 1; node >= 1; node >>>= 1) {
+            if(this.beats(t[node], candidate)) {
+                int loser = candidate;
+                candidate = t[node];
+                t[node] = loser;
+            }
+        }
+        t[0] = candidate;
+    }
+
+    /**
+     * @return true if the head of source a comes before the head of source b.
+     *         Exhausted sources lose every match and ties go to the lower source
+     */
+    @SuppressWarnings("unchecked")
+    private boolean beats(int a, int b) {
+        if(this.exhausted[a]) {
+            return false;
+        }
+        if(this.exhausted[b]) {
+            return true;
+        }
+        E x = (E) this.heads[a];
+        E y = (E) this.heads[b];
+        int c = this.comparator!=null ? this.comparator.compare(x, y) : ((Comparable<? super E>) x).compareTo(y);
+        return c < 0 || (c == 0 && a < b);
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.beardfish.heap;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * MinHeap that stores the minimum value at the top according to the natural
@@ -16,10 +18,26 @@ public class MinHeap<E> extends AbstractQueue<E> {
 
 	// static variable
 	private static final int DEFAULT_INITIAL_CAPACITY = 12;
+	/* binary layout, the default */
+	public static final int BINARY = 2;
+	/* four children per node, a good default when polls dominate */
+	public static final int QUATERNARY = 4;
+	/* eight children per node, flattest tree for heaps well beyond the caches */
+	public static final int OCTONARY = 8;
+	private static final int MAX_ARITY = 64;
 	// instance variables
 	private final Comparator<? super E> comparator;
+	// number of children per node is 1 << arityShift
+	private final int arityShift;
 	private transient Object[] queue;
+	// element to position map, only kept in indexed mode
+	private final transient PositionIndex index;
+	// insertion sequence of every element aligned with queue, only kept in stable mode
+	private transient long[] seq;
+	private long nextSeq = 0;
 	private int size = 0;
+	// counters, only kept once enableStats is called
+	private transient HeapStats stats;
 	// modification count for the iterator
 	private transient int modCount = 0;
 
@@ -27,12 +45,23 @@ public class MinHeap<E> extends AbstractQueue<E> {
 		this(DEFAULT_INITIAL_CAPACITY, null);
 	}
 
+	/**
+	 * Creates a heap containing the elements of the collection. Unless the
+	 * collection is already a MinHeap the heap is built bottom up in O(n)
+	 * @param c
+	 */
 	public MinHeap(Collection<? extends E> c) {
-		initFromCollection(c);
 		if (c instanceof MinHeap) {
 			this.comparator = (Comparator<? super E>) ((MinHeap<? extends E>) c).comparator();
+			this.arityShift = ((MinHeap<? extends E>) c).arityShift;
+			this.index = ((MinHeap<? extends E>) c).index!=null ? new PositionIndex(c.size()) : null;
+			initFromCollection(c);
 		} else {
 			this.comparator = null;
+			this.arityShift = 1;
+			this.index = null;
+			initFromCollection(c);
+			heapify();
 		}
 	}
 
@@ -41,15 +70,57 @@ public class MinHeap<E> extends AbstractQueue<E> {
 	}
 
 	public MinHeap(int initialCapacity, Comparator<? super E> comparator) {
+		this(initialCapacity, comparator, MinHeap.BINARY);
+	}
+
+	/**
+	 * @param initialCapacity
+	 * @param comparator - the ordering or null for the natural ordering
+	 * @param arity - the number of children per node, a power of two between 2 and 64.
+	 *              {@link MinHeap#QUATERNARY} and {@link MinHeap#OCTONARY} keep the children
+	 *              of a node on one cache line and shorten the tree
+	 */
+	public MinHeap(int initialCapacity, Comparator<? super E> comparator, int arity) {
+		this(initialCapacity, comparator, arity, false);
+	}
+
+	/**
+	 * @param initialCapacity
+	 * @param comparator - the ordering or null for the natural ordering
+	 * @param arity - the number of children per node, a power of two between 2 and 64
+	 * @param indexed - keep a map from every element to its position, updated on
+	 *                every move, so contains is O(1) and remove(Object) is O(log n)
+	 *                instead of a linear scan. Costs two ints per element plus a
+	 *                hash table of twice the size
+	 */
+	public MinHeap(int initialCapacity, Comparator<? super E> comparator, int arity, boolean indexed) {
+		this(initialCapacity, comparator, arity, indexed, false);
+	}
+
+	/**
+	 * @param initialCapacity
+	 * @param comparator - the ordering or null for the natural ordering
+	 * @param arity - the number of children per node, a power of two between 2 and 64
+	 * @param indexed - keep a map from every element to its position, see above
+	 * @param stable - elements that compare equal leave in the order they were
+	 *               offered. The insertion sequence is kept in a long per element
+	 *               next to the array and breaks ties, so no wrapper is needed
+	 */
+	public MinHeap(int initialCapacity, Comparator<? super E> comparator, int arity, boolean indexed, boolean stable) {
 		if (initialCapacity < 1) {
 			throw new IllegalArgumentException();
 		}
+		this.arityShift = MinHeap.arityShift(arity);
 		this.queue = new Object[initialCapacity];
 		this.comparator = comparator;
+		this.index = indexed ? new PositionIndex(initialCapacity) : null;
+		this.seq = stable ? new long[initialCapacity] : null;
 	}
 
 	public MinHeap(MinHeap<? extends E> c) {
 		this.comparator = (Comparator<? super E>) c.comparator();
+		this.arityShift = c.arityShift;
+		this.index = c.index!=null ? new PositionIndex(c.size()) : null;
 		initFromCollection(c);
 	}
 
@@ -57,21 +128,134 @@ public class MinHeap<E> extends AbstractQueue<E> {
 		Object[] cArray = c.toArray();
 		if (cArray.getClass() != Object[].class) {
 			cArray = Arrays.copyOf(cArray, cArray.length, Object[].class);
-			this.queue = cArray;
-			this.size = cArray.length;
+		}
+		for(int i = 0; i < cArray.length; i++) {
+			if(cArray[i]==null) {
+				throw new NullPointerException();
+			}
+		}
+		this.queue = cArray;
+		this.size = cArray.length;
+		if(this.index!=null) {
+			this.index.ensureCapacity(cArray.length);
+			for(int i = 0; i < cArray.length; i++) {
+				this.index.place(this.index.insert(cArray[i]), i);
+			}
+		}
+		if(c instanceof MinHeap && ((MinHeap<?>) c).seq!=null) {
+			/* toArray copies in array order so the sequences stay aligned */
+			MinHeap<?> h = (MinHeap<?>) c;
+			this.seq = Arrays.copyOf(h.seq, cArray.length);
+			this.nextSeq = h.nextSeq;
 		}
 	}
 
+	/**
+	 * Establish the heap property over the whole array bottom up (Floyd).
+	 * Every subtree below a parent is already a heap when the parent is
+	 * percolated down, which makes the total work O(n)
+	 */
+	@SuppressWarnings("unchecked")
+	private void heapify() {
+		if(this.size < 2) {
+			return;
+		}
+		PositionIndex ix = this.index;
+		long[] sq = this.seq;
+		for(int i = this.getParent(this.size - 1); i >= 0; i--) {
+			int t = ix!=null ? ix.slot(i) : 0;
+			int at = this.percolateDown(i, (E) this.queue[i], sq!=null ? sq[i] : 0L);
+			if(ix!=null) {
+				ix.place(t, at);
+			}
+		}
+	}
+
+	/**
+	 * Validate the arity and convert it to a shift
+	 * @param arity
+	 * @return log2 of the arity
+	 */
+	static int arityShift(int arity) {
+		if(arity < BINARY || arity > MAX_ARITY || Integer.bitCount(arity) != 1) {
+			throw new IllegalArgumentException("arity must be a power of two between 2 and " + MAX_ARITY);
+		}
+		return Integer.numberOfTrailingZeros(arity);
+	}
+
+	/**
+	 * Decide whether a batch of m elements should be appended and the whole
+	 * heap rebuilt instead of sifting each element up on its own. Offering
+	 * costs up to log2(n+m) comparisons per element while a rebuild costs
+	 * at most about 2(n+m) comparisons in total
+	 */
+	static boolean rebuildIsCheaper(int n, int m) {
+		long total = (long) n + m;
+		int height = 63 - Long.numberOfLeadingZeros(total);
+		return (long) m * height >= 2 * total;
+	}
+
     @Override
     public boolean add(E object) {
         return this.offer(object);
     }
 
+	/**
+	 * Adds all of the elements of the collection. Large batches are appended
+	 * and the heap is rebuilt in linear time instead of offering one at a time
+	 * @param c
+	 * @return true if the heap changed
+	 */
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		if(c==null) {
+			throw new NullPointerException();
+		}
+		if(c==this) {
+			throw new IllegalArgumentException();
+		}
+		int n = this.size;
+		int m = c.size();
+		if(!rebuildIsCheaper(n, m)) {
+			return super.addAll(c);
+		}
+		Object[] cArray = c.toArray();
+		m = cArray.length;
+		for(int i = 0; i < m; i++) {
+			if(cArray[i]==null) {
+				throw new NullPointerException();
+			}
+		}
+		if(m==0) {
+			return false;
+		}
+		this.modCount++;
+		if(n + m > this.queue.length) {
+			grow(n + m);
+		}
+		System.arraycopy(cArray, 0, this.queue, n, m);
+		if(this.index!=null) {
+			for(int i = 0; i < m; i++) {
+				this.index.place(this.index.insert(cArray[i]), n + i);
+			}
+		}
+		if(this.seq!=null) {
+			for(int i = 0; i < m; i++) {
+				this.seq[n + i] = this.nextSeq++;
+			}
+		}
+		this.size = n + m;
+		heapify();
+		return true;
+	}
+
 	@Override
 	public boolean offer(E object) {
 		if(object==null) {
 			throw new NullPointerException();
 		}
+		HeapStats st = this.stats;
+		long start = st!=null ? System.nanoTime() : 0L;
 		/* update the modCount to make sure you invalidate the iterator */
 		this.modCount++;
 		
@@ -85,12 +269,25 @@ public class MinHeap<E> extends AbstractQueue<E> {
         /* update the size */
 		this.size = i + 1;
 		
+		int t = this.index!=null ? this.index.insert(object) : 0;
+		long s = this.seq!=null ? this.nextSeq++ : 0L;
+		int at;
 		if(i==0) {
 			this.queue[0] = object;
+			if(this.seq!=null) {
+				this.seq[0] = s;
+			}
+			at = 0;
 		} else {
-			percolateUp(i,object);
+			at = percolateUp(i,object,s);
+		}
+		if(this.index!=null) {
+			this.index.place(t, at);
 		}
 		
+		if(st!=null) {
+			st.operation(this, "offer", start, this.size);
+		}
 		return true;
 	}
 
@@ -116,12 +313,152 @@ public class MinHeap<E> extends AbstractQueue<E> {
 			return null;
 		}
 
-        E head = this.removeAt(0);
+		HeapStats st = this.stats;
+		long start = st!=null ? System.nanoTime() : 0L;
+        E head = (E) this.queue[0];
+        this.removeAt(0);
+		if(st!=null) {
+			st.operation(this, "poll", start, this.size);
+		}
 		
 		return head;
 		
 	}
 	
+	/**
+	 * Replace the head with the element in a single percolation, cheaper than
+	 * poll followed by offer
+	 * @param object - the new element
+	 * @return the previous head
+	 * @throws NoSuchElementException if the heap is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public E replaceTop(E object) {
+		if(object==null) {
+			throw new NullPointerException();
+		}
+		if(this.size==0) {
+			throw new NoSuchElementException();
+		}
+		this.modCount++;
+		E head = (E) this.queue[0];
+		long s = this.seq!=null ? this.nextSeq++ : 0L;
+		if(this.index!=null) {
+			this.index.remove(0);
+			int t = this.index.insert(object);
+			this.index.place(t, this.percolateDown(0, object, s));
+		} else {
+			this.percolateDown(0, object, s);
+		}
+		return head;
+	}
+
+	/**
+	 * Retrieves and removes up to n elements in priority order in one batch
+	 * @param n - the most elements to remove
+	 * @param dest - receives the elements from index 0
+	 * @return the number of elements removed, at most min(n, size, dest.length)
+	 */
+	@SuppressWarnings("unchecked")
+	public int pollN(int n, E[] dest) {
+		if(n < 0) {
+			throw new IllegalArgumentException();
+		}
+		int count = Math.min(Math.min(n, this.size), dest.length);
+		if(count==0) {
+			return 0;
+		}
+		this.modCount++;
+		for(int i = 0; i < count; i++) {
+			dest[i] = (E) this.queue[0];
+			this.unlinkAt(0);
+		}
+		return count;
+	}
+
+	/**
+	 * Removes every element and adds them to the collection in priority order
+	 * @param c
+	 * @return the number of elements moved
+	 */
+	public int drainTo(Collection<? super E> c) {
+		return this.drainTo(c, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Removes up to maxElements elements and adds them to the collection in
+	 * priority order
+	 * @param c
+	 * @param maxElements
+	 * @return the number of elements moved
+	 */
+	@SuppressWarnings("unchecked")
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		if(c==null) {
+			throw new NullPointerException();
+		}
+		if(c==this) {
+			throw new IllegalArgumentException();
+		}
+		int count = Math.min(Math.max(maxElements, 0), this.size);
+		if(count==0) {
+			return 0;
+		}
+		this.modCount++;
+		for(int i = 0; i < count; i++) {
+			c.add((E) this.queue[0]);
+			this.unlinkAt(0);
+		}
+		return count;
+	}
+
+	/**
+	 * Removes every element and returns them in priority order. The backing
+	 * array is heapsorted in place and handed over as the list, nothing is
+	 * copied; the heap continues with a new empty array of the same capacity
+	 * @return a fixed size list backed by the former heap array
+	 */
+	@SuppressWarnings("unchecked")
+	public List<E> drainSorted() {
+		Object[] q = this.queue;
+		long[] sq = this.seq;
+		int n = this.size;
+		this.modCount++;
+		/* repeatedly move the head behind the shrinking heap, leaving the array in descending order */
+		for(int k = n - 1; k > 0; k--) {
+			Object head = q[0];
+			this.size = k;
+			this.percolateBottomUp(0, (E) q[k], sq!=null ? sq[k] : 0L);
+			q[k] = head;
+		}
+		for(int i = 0, j = n - 1; i < j; i++, j--) {
+			Object t = q[i];
+			q[i] = q[j];
+			q[j] = t;
+		}
+		this.queue = new Object[q.length];
+		if(sq!=null) {
+			this.seq = new long[q.length];
+		}
+		this.size = 0;
+		if(this.index!=null) {
+			this.index.clear();
+		}
+		List<E> sorted = (List<E>) Arrays.asList(q);
+		return n==q.length ? sorted : sorted.subList(0, n);
+	}
+
+	/**
+	 * Compare two elements with the ordering of this heap
+	 */
+	@SuppressWarnings("unchecked")
+	int compare(E a, E b) {
+		if(this.comparator!=null) {
+			return this.comparator.compare(a, b);
+		}
+		return ((Comparable<? super E>) a).compareTo(b);
+	}
+
 	@Override
 	public boolean contains(Object o) {
 		return indexOf(o) != -1;
@@ -135,6 +472,46 @@ public class MinHeap<E> extends AbstractQueue<E> {
 	public Comparator<? super E> comparator() {
 		return this.comparator;
 	}
+
+	/**
+	 * Start counting comparisons, moves, sift depths and resizes and timing
+	 * offer, poll and remove. Until then the counters cost one null check per sift
+	 * @return the statistics of this heap, see {@link HeapStats#register(String)} to publish them
+	 */
+	public HeapStats enableStats() {
+		if(this.stats==null) {
+			this.stats = new HeapStats(this.queue.length);
+		}
+		return this.stats;
+	}
+
+	/**
+	 * Stop counting, the statistics object keeps its last values
+	 */
+	public void disableStats() {
+		this.stats = null;
+	}
+
+	/**
+	 * @return the statistics or null if they are not enabled
+	 */
+	public HeapStats stats() {
+		return this.stats;
+	}
+
+	/**
+	 * @return true if elements that compare equal leave in insertion order
+	 */
+	public boolean isStable() {
+		return this.seq!=null;
+	}
+
+	/**
+	 * @return the number of children per node
+	 */
+	public int arity() {
+		return 1 << this.arityShift;
+	}
 	
 	/**
 	 * Grow the heap by the integer specified
@@ -144,6 +521,8 @@ public class MinHeap<E> extends AbstractQueue<E> {
 		if(minCapacity<0) {
 			throw new OutOfMemoryError();
 		}
+		HeapStats st = this.stats;
+		long start = st!=null ? System.nanoTime() : 0L;
 		int oldCapacity = this.queue.length;
 		int newCapacity = ((oldCapacity<64)) ?
 				((oldCapacity+1) * 2) : 
@@ -155,61 +534,127 @@ public class MinHeap<E> extends AbstractQueue<E> {
 			newCapacity = minCapacity;
 		}
 		this.queue = Arrays.copyOf(this.queue,newCapacity);
+		if(this.seq!=null) {
+			this.seq = Arrays.copyOf(this.seq, newCapacity);
+		}
+		if(st!=null) {
+			st.resize(this, oldCapacity, newCapacity, start);
+		}
+		if(this.index!=null) {
+			this.index.ensureCapacity(newCapacity);
+		}
+	}
+
+	/**
+	 * @return true if the heap keeps an element to position map
+	 */
+	public boolean isIndexed() {
+		return this.index!=null;
 	}
 	
 	/**
 	 * Percolate the element up until you find one that is less than or equal to
-	 * the element you are trying to add
+	 * the element you are trying to add. The element is carried in a local and
+	 * parents are moved down into the hole, so each level costs one store
+	 * @param s - the insertion sequence of the element, ignored unless stable
+	 * @return the index the element ended up at
 	 */
-	private void percolateUp(int index, E element) {
+	private int percolateUp(int index, E element, long s) {
 		if(this.comparator!=null) {
-			percolateUpUsingComparator(index,element);
+			return percolateUpUsingComparator(index,element,s);
 		} else {
-			percolateUpComparable(index,element);
+			return percolateUpComparable(index,element,s);
 		}
 		
 	}
 	
 	@SuppressWarnings("unchecked")
-	private void percolateUpUsingComparator(int index, E element) {
-		if(index==0) {
-			return;
+	private int percolateUpUsingComparator(int index, E element, long s) {
+		Object[] q = this.queue;
+		PositionIndex ix = this.index;
+		long[] sq = this.seq;
+		int depth = 0;
+		while(index>0) {
+			int p = this.getParent(index);
+			E parent = (E) q[p];
+			int c = this.comparator.compare(element,parent);
+			if(c==0 && sq!=null) {
+				c = Long.compare(s, sq[p]);
+			}
+			if(c>=0) {
+				break;
+			}
+			q[index] = parent;
+			if(ix!=null) {
+				ix.move(p, index);
+			}
+			if(sq!=null) {
+				sq[index] = sq[p];
+			}
+			index = p;
+			depth++;
 		}
-		int p = this.getParent(index);
-		E parent = (E) this.queue[p];
-		if(this.comparator.compare(element,parent)<0) {
-			this.queue[index] = parent;
-			this.queue[p] = element;
-			this.percolateUpUsingComparator(p, element);
-		} else {
-			this.queue[index] = element;
+		q[index] = element;
+		if(sq!=null) {
+			sq[index] = s;
+		}
+		if(this.stats!=null) {
+			/* the loop only ends without a comparison at the root */
+			this.stats.sift(depth, index>0 ? depth + 1 : depth, depth + 1);
 		}
+		return index;
 	}
 	
 	@SuppressWarnings("unchecked")
-	private void percolateUpComparable(int index, E element) {
-		if(index==0) {
-			return;
-		}
+	private int percolateUpComparable(int index, E element, long s) {
+		Object[] q = this.queue;
+		PositionIndex ix = this.index;
+		long[] sq = this.seq;
 		Comparable<? super E> key = (Comparable<? super E>) element;
-		int p = this.getParent(index);
-		E parent = (E) this.queue[p];
-		if(key.compareTo(parent)<0) {
-			this.queue[index] = parent;
-			this.queue[p] = element;
-			this.percolateUpComparable(p,element);
-		} else {
-			this.queue[index] = element;
+		int depth = 0;
+		while(index>0) {
+			int p = this.getParent(index);
+			E parent = (E) q[p];
+			int c = key.compareTo(parent);
+			if(c==0 && sq!=null) {
+				c = Long.compare(s, sq[p]);
+			}
+			if(c>=0) {
+				break;
+			}
+			q[index] = parent;
+			if(ix!=null) {
+				ix.move(p, index);
+			}
+			if(sq!=null) {
+				sq[index] = sq[p];
+			}
+			index = p;
+			depth++;
 		}
+		q[index] = element;
+		if(sq!=null) {
+			sq[index] = s;
+		}
+		if(this.stats!=null) {
+			/* the loop only ends without a comparison at the root */
+			this.stats.sift(depth, index>0 ? depth + 1 : depth, depth + 1);
+		}
+		return index;
 	}
 
 	
+
 	/**
-	 * Find the object in the queue 
+	 * Find the object in the queue, a hash lookup in indexed mode and a linear
+	 * scan otherwise
 	 * @param o
 	 * @return 0 if found; -1 otherwise
 	 */
 	private int indexOf(Object o) {
+		if(o!=null && this.index!=null) {
+			return this.index.find(o, this.queue, false);
+		}
 		if(o!=null) {
 			for(int i = 0;i<this.size;i++) {
 				if(o.equals(this.queue[i])) {
@@ -226,40 +671,118 @@ public class MinHeap<E> extends AbstractQueue<E> {
 	 * @return true if it exists; false otherwise
 	 */
 	public boolean remove(Object o) {
+		HeapStats st = this.stats;
+		long start = st!=null ? System.nanoTime() : 0L;
 		int index = indexOf(o);
 		if(index!=-1) {
 			removeAt(index);
+			if(st!=null) {
+				st.operation(this, "remove", start, this.size);
+			}
 			return true;
 		}
 		return false;
 	}
 	
 	/**
-	 * Remove the object at the specified index
+	 * Remove the object at the specified index. The hole left behind is filled
+	 * with the last element
 	 * @param index
-	 * @return the object removed
+	 * @return the last element if it had to move above index (so an iterator
+	 *         that already passed index would miss it); null otherwise
 	 */
 	private E removeAt(int index) {
 		assert index >= 0 && index < this.size();
 		this.modCount++;
+		return this.unlinkAt(index);
+	}
+
+	/**
+	 * removeAt without the modCount update, for batches that update it once
+	 */
+	@SuppressWarnings("unchecked")
+	private E unlinkAt(int index) {
 		int s = --size;
-		E element = (E) this.queue[index];
+		if(this.index!=null) {
+			this.index.remove(index);
+		}
 		/* last element */
 		if(s==index) {
 			this.queue[index] = null;
 		} else {
-			/* place the last element at the index of the removed element */
-			this.queue[index] = this.queue[s];
+			/* fill the hole at index with the last element */
+			E moved = (E) this.queue[s];
 			this.queue[s] = null;
-			this.percolateDown(index,(E) this.queue[index]);
+			int t = this.index!=null ? this.index.slot(s) : 0;
+			int at = this.percolateBottomUp(index,moved,this.seq!=null ? this.seq[s] : 0L);
+			if(this.index!=null) {
+				this.index.place(t, at);
+			}
+			if(at<index) {
+				return moved;
+			}
 		}
-        /* set the new size */
-        this.size = s;
-		return element;
+		return null;
 		
 	}
 
-    private boolean removeEq(Object o) {
+	/**
+	 * Remove every element matching the filter with one pass over the array
+	 * followed by a rebuild, O(n) instead of one removal per match
+	 * @param filter
+	 * @return true if any element was removed
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean removeIf(Predicate<? super E> filter) {
+		if(filter==null) {
+			throw new NullPointerException();
+		}
+		Object[] q = this.queue;
+		int n = this.size;
+		int kept = 0;
+		PositionIndex ix = this.index;
+		long[] sq = this.seq;
+		for(int i = 0; i < n; i++) {
+			E e = (E) q[i];
+			if(!filter.test(e)) {
+				if(ix!=null) {
+					ix.move(i, kept);
+				}
+				if(sq!=null) {
+					sq[kept] = sq[i];
+				}
+				q[kept++] = e;
+			} else if(ix!=null) {
+				ix.remove(i);
+			}
+		}
+		if(kept==n) {
+			return false;
+		}
+		this.modCount++;
+		for(int i = kept; i < n; i++) {
+			q[i] = null;
+		}
+		this.size = kept;
+		heapify();
+		return true;
+	}
+
+    /**
+     * Remove the object if it is in the heap, compared by identity
+     * @param o
+     * @return true if it was removed
+     */
+    boolean removeEq(Object o) {
+        if(this.index!=null) {
+            int i = this.index.find(o, this.queue, true);
+            if(i!=-1) {
+                removeAt(i);
+                return true;
+            }
+            return false;
+        }
         for(int i = 0;i<this.size();i++) {
             if(o==queue[i]) {
                 removeAt(i);
@@ -271,17 +794,19 @@ public class MinHeap<E> extends AbstractQueue<E> {
 
 	
 	/**
-	 * percolateDown until you find that both children are less than the element
-	 * while percolating you should replace with the smaller of the children to maintain
-	 * the heap property
+	 * percolateDown until you find that all children are greater than or equal to the element
+	 * while percolating you should move up the smallest of the children into the hole to
+	 * maintain the heap property
 	 * @param index
 	 * @param element
+	 * @param s - the insertion sequence of the element, ignored unless stable
+	 * @return the index the element ended up at
 	 */
-	private void percolateDown(int index, E element) {
+	private int percolateDown(int index, E element, long s) {
 		if(this.comparator!=null) {
-			this.percolateDownWithComparator(index, element);
+			return this.percolateDownWithComparator(index, element, s);
 		} else {
-			this.percolateDownComparable(index, element);
+			return this.percolateDownComparable(index, element, s);
 		}
 	}
 	
@@ -291,20 +816,39 @@ public class MinHeap<E> extends AbstractQueue<E> {
 	 * @param element
 	 */
 	@SuppressWarnings("unchecked")
-	private void percolateDownWithComparator(int index, E element) {
-		if(index==this.size) {
-			return;
-		}
-		int childIndex = this.getSmallerChildComparator(index);
-		if(childIndex!=-1) {
-			E child = (E) this.queue[childIndex];
-			if(this.comparator.compare(element,child)>0) {
-				this.queue[childIndex] = element;
-				this.queue[index] = child;
-				this.percolateDownWithComparator(childIndex, element);
+	private int percolateDownWithComparator(int index, E element, long s) {
+		Object[] q = this.queue;
+		PositionIndex ix = this.index;
+		long[] sq = this.seq;
+		int childIndex;
+		int depth = 0;
+		while((childIndex = this.getSmallerChildComparator(index))!=-1) {
+			E child = (E) q[childIndex];
+			int c = this.comparator.compare(element,child);
+			if(c==0 && sq!=null) {
+				c = Long.compare(s, sq[childIndex]);
+			}
+			if(c<=0) {
+				break;
+			}
+			q[index] = child;
+			if(ix!=null) {
+				ix.move(childIndex, index);
+			}
+			if(sq!=null) {
+				sq[index] = sq[childIndex];
 			}
+			index = childIndex;
+			depth++;
 		}
-		
+		q[index] = element;
+		if(sq!=null) {
+			sq[index] = s;
+		}
+		if(this.stats!=null) {
+			this.stats.sift(depth, childIndex!=-1 ? depth + 1 : depth, depth + 1);
+		}
+		return index;
 	}
 	
 	/**
@@ -313,54 +857,131 @@ public class MinHeap<E> extends AbstractQueue<E> {
 	 * @param element
 	 */
 	@SuppressWarnings("unchecked")
-	private void percolateDownComparable(int index, E element) {
-		if(index==this.size) {
-			return;
-		}
+	private int percolateDownComparable(int index, E element, long s) {
+		Object[] q = this.queue;
+		PositionIndex ix = this.index;
+		long[] sq = this.seq;
 		Comparable<? super E> key = (Comparable<? super E>) element;
-		int childIndex = this.getSmallerChildComparable(index);
-		if(childIndex!=-1) {
-			E child = (E) this.queue[childIndex];
-			if(key.compareTo(child)>0) {
-				this.queue[childIndex] = element;
-				this.queue[index] = child;
-				this.percolateDownComparable(childIndex, element);
+		int childIndex;
+		int depth = 0;
+		while((childIndex = this.getSmallerChildComparable(index))!=-1) {
+			E child = (E) q[childIndex];
+			int c = key.compareTo(child);
+			if(c==0 && sq!=null) {
+				c = Long.compare(s, sq[childIndex]);
 			}
+			if(c<=0) {
+				break;
+			}
+			q[index] = child;
+			if(ix!=null) {
+				ix.move(childIndex, index);
+			}
+			if(sq!=null) {
+				sq[index] = sq[childIndex];
+			}
+			index = childIndex;
+			depth++;
+		}
+		q[index] = element;
+		if(sq!=null) {
+			sq[index] = s;
+		}
+		if(this.stats!=null) {
+			this.stats.sift(depth, childIndex!=-1 ? depth + 1 : depth, depth + 1);
 		}
+		return index;
 	}
-	
+
+	/**
+	 * Fill the hole at index with element using bottom-up deletion: the hole is
+	 * first walked down to a leaf along the smallest children, comparing only
+	 * children with each other, and the element is then percolated up from the
+	 * leaf. The element usually belongs near the bottom so the walk back up is
+	 * short, which saves about one comparison per level over percolateDown
+	 * @param index
+	 * @param element
+	 * @param s - the insertion sequence of the element, ignored unless stable
+	 * @return the index the element ended up at
+	 */
+	private int percolateBottomUp(int index, E element, long s) {
+		Object[] q = this.queue;
+		PositionIndex ix = this.index;
+		long[] sq = this.seq;
+		int childIndex;
+		int depth = 0;
+		HeapStats st = this.stats;
+		if(this.comparator!=null) {
+			while((childIndex = this.getSmallerChildComparator(index))!=-1) {
+				q[index] = q[childIndex];
+				if(ix!=null) {
+					ix.move(childIndex, index);
+				}
+				if(sq!=null) {
+					sq[index] = sq[childIndex];
+				}
+				index = childIndex;
+				depth++;
+			}
+			if(st!=null) {
+				/* the walk down only compares siblings, counted where they are scanned */
+				st.sift(depth, 0, depth);
+			}
+			return this.percolateUpUsingComparator(index, element, s);
+		} else {
+			while((childIndex = this.getSmallerChildComparable(index))!=-1) {
+				q[index] = q[childIndex];
+				if(ix!=null) {
+					ix.move(childIndex, index);
+				}
+				if(sq!=null) {
+					sq[index] = sq[childIndex];
+				}
+				index = childIndex;
+				depth++;
+			}
+			if(st!=null) {
+				/* the walk down only compares siblings, counted where they are scanned */
+				st.sift(depth, 0, depth);
+			}
+			return this.percolateUpComparable(index, element, s);
+		}
+	}
+
 	/**
 	 * Retrieve the parent index of a given item
-     * Subtracting 1 and doing an unsigned right shift is the same as dividing by 2 and doing the floor operation
+	 * Subtracting 1 and doing an unsigned right shift by log2(arity) is the same as dividing by the arity and doing the floor operation
 	 * @param index
 	 * @return the parent index
 	 */
 	private int getParent(int index) {
-		// even index
-		return (index-1) >>> 1;
+		return (index-1) >>> this.arityShift;
 	}
 	
 	/**
 	 * Calculates the children for a given index
 	 * Checks to see which one is smaller and returns the index
-	 * It will return the index of a null item if its at the end
+	 * The children of index are stored contiguously starting at arity*index+1
 	 * @param index
 	 * @return index of smaller child of -1 if no children
 	 */
 	@SuppressWarnings("unchecked")
 	private int getSmallerChildComparator(int index) {
-		int c = 0;
-		int leftChild = (2*index)+1;
-		int rightChild = (2*index)+2;
-		if (this.queue[leftChild]==null) {
-			c = -1;
-		} else if(this.queue[rightChild]==null) {
-			c = leftChild;
-		} else {
-			if(this.comparator.compare((E)this.queue[leftChild],(E)this.queue[rightChild])<0) {
-				c = leftChild;
-			} else {
-				c = rightChild;
+		long first = ((long) index << this.arityShift) + 1;
+		if (first>=this.size) {
+			return -1;
+		}
+		int c = (int) first;
+		int end = (int) Math.min(first + (1 << this.arityShift), this.size);
+		if(this.stats!=null) {
+			this.stats.comparisons += end - c - 1;
+		}
+		long[] sq = this.seq;
+		E smallest = (E) this.queue[c];
+		for(int i = c + 1; i < end; i++) {
+			int cmp = this.comparator.compare((E) this.queue[i],smallest);
+			if(cmp<0 || (cmp==0 && sq!=null && sq[i]<sq[c])) {
+				smallest = (E) this.queue[c = i];
 			}
 		}
 		return c;
@@ -369,25 +990,27 @@ public class MinHeap<E> extends AbstractQueue<E> {
 	/**
 	 * Calculates the children for a given index
 	 * Checks to see which one is smaller and returns the index
-	 * It will return the index of a null item if its at the end
+	 * The children of index are stored contiguously starting at arity*index+1
 	 * @param index
 	 * @return index of a smaller child or -1 if no children
 	 */
 	@SuppressWarnings("unchecked")
 	private int getSmallerChildComparable(int index) {
-		int c = 0;
-		int leftChild = (2*index)+1;
-		int rightChild = (2*index)+2;
-		if (this.queue[leftChild]==null) {
-			c = -1;
-		} else if(this.queue[rightChild]==null) {
-			c = leftChild;
-		} else {
-			Comparable<? super E> key = (Comparable<? super E>) this.queue[leftChild];
-			if(key.compareTo((E)this.queue[rightChild])<0) {
-				c = leftChild;
-			} else {
-				c = rightChild;
+		long first = ((long) index << this.arityShift) + 1;
+		if (first>=this.size) {
+			return -1;
+		}
+		int c = (int) first;
+		int end = (int) Math.min(first + (1 << this.arityShift), this.size);
+		if(this.stats!=null) {
+			this.stats.comparisons += end - c - 1;
+		}
+		long[] sq = this.seq;
+		Comparable<? super E> smallest = (Comparable<? super E>) this.queue[c];
+		for(int i = c + 1; i < end; i++) {
+			int cmp = smallest.compareTo((E) this.queue[i]);
+			if(cmp>0 || (cmp==0 && sq!=null && sq[i]<sq[c])) {
+				smallest = (Comparable<? super E>) this.queue[c = i];
 			}
 		}
 		return c;
@@ -405,6 +1028,9 @@ public class MinHeap<E> extends AbstractQueue<E> {
 			this.queue[i] = null;
 		}
 		this.size=0;
+		if(this.index!=null) {
+			this.index.clear();
+		}
 	}
 	
 	@Override
@@ -428,6 +1054,27 @@ public class MinHeap<E> extends AbstractQueue<E> {
 	public Iterator<E> iterator() {
 		return new Itr();
 	}
+
+	/**
+	 * Iterate in priority order without removing anything. A small heap of
+	 * array indexes (the frontier) holds the candidates for the next element:
+	 * returning an element replaces it with its children, so the first k
+	 * elements cost O(k log k) whatever the size of the heap. remove is not supported
+	 * @return the iterator
+	 */
+	public Iterator<E> orderedIterator() {
+		return new OrderedItr();
+	}
+
+	/**
+	 * Splits over the backing array in array order, so a parallel stream scans
+	 * a large heap on several cores. Fails fast if the heap is modified
+	 * @return the spliterator
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return new HeapSpliterator(0, -1, 0);
+	}
 	
 	private final class Itr implements Iterator<E> {
 		
@@ -497,4 +1144,180 @@ public class MinHeap<E> extends AbstractQueue<E> {
 		
 	}
 
+	private final class OrderedItr implements Iterator<E> {
+
+		/* heap of indexes into queue ordered by the elements they point at */
+		private int[] frontier = new int[1 << (MinHeap.this.arityShift + 1)];
+
+		private int frontierSize = 0;
+
+		private final int expectedModCount = MinHeap.this.modCount;
+
+		OrderedItr() {
+			if(MinHeap.this.size > 0) {
+				this.push(0);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.frontierSize > 0;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public E next() {
+			if(this.expectedModCount!=MinHeap.this.modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(this.frontierSize==0) {
+				throw new NoSuchElementException();
+			}
+			int index = this.pop();
+			long first = ((long) index << MinHeap.this.arityShift) + 1;
+			long end = Math.min(first + (1 << MinHeap.this.arityShift), MinHeap.this.size);
+			for(long c = first; c < end; c++) {
+				this.push((int) c);
+			}
+			return (E) MinHeap.this.queue[index];
+		}
+
+		@SuppressWarnings("unchecked")
+		private boolean less(int a, int b) {
+			int c = MinHeap.this.compare((E) MinHeap.this.queue[a], (E) MinHeap.this.queue[b]);
+			long[] sq = MinHeap.this.seq;
+			return c < 0 || (c==0 && sq!=null && sq[a] < sq[b]);
+		}
+
+		private void push(int index) {
+			if(this.frontierSize==this.frontier.length) {
+				this.frontier = Arrays.copyOf(this.frontier, this.frontierSize * 2);
+			}
+			int[] f = this.frontier;
+			int i = this.frontierSize++;
+			while(i > 0) {
+				int p = (i - 1) >>> 1;
+				if(!this.less(index, f[p])) {
+					break;
+				}
+				f[i] = f[p];
+				i = p;
+			}
+			f[i] = index;
+		}
+
+		private int pop() {
+			int[] f = this.frontier;
+			int top = f[0];
+			int last = f[--this.frontierSize];
+			int n = this.frontierSize;
+			int i = 0;
+			int c;
+			while((c = 2 * i + 1) < n) {
+				if(c + 1 < n && this.less(f[c + 1], f[c])) {
+					c++;
+				}
+				if(!this.less(f[c], last)) {
+					break;
+				}
+				f[i] = f[c];
+				i = c;
+			}
+			if(n > 0) {
+				f[i] = last;
+			}
+			return top;
+		}
+	}
+
+	private final class HeapSpliterator implements Spliterator<E> {
+
+		private int index;
+
+		/* -1 until first use, then one past the last index */
+		private int fence;
+
+		private int expectedModCount;
+
+		HeapSpliterator(int origin, int fence, int expectedModCount) {
+			this.index = origin;
+			this.fence = fence;
+			this.expectedModCount = expectedModCount;
+		}
+
+		/* bind to the heap on first use so the spliterator sees changes made before the traversal */
+		private int getFence() {
+			int hi = this.fence;
+			if(hi < 0) {
+				this.expectedModCount = MinHeap.this.modCount;
+				hi = this.fence = MinHeap.this.size;
+			}
+			return hi;
+		}
+
+		@Override
+		public Spliterator<E> trySplit() {
+			int hi = this.getFence();
+			int lo = this.index;
+			int mid = (lo + hi) >>> 1;
+			if(lo >= mid) {
+				return null;
+			}
+			this.index = mid;
+			return new HeapSpliterator(lo, mid, this.expectedModCount);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean tryAdvance(Consumer<? super E> action) {
+			if(action==null) {
+				throw new NullPointerException();
+			}
+			int hi = this.getFence();
+			int i = this.index;
+			if(i >= hi) {
+				return false;
+			}
+			this.index = i + 1;
+			E e = (E) MinHeap.this.queue[i];
+			if(e==null || MinHeap.this.modCount!=this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			action.accept(e);
+			return true;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void forEachRemaining(Consumer<? super E> action) {
+			if(action==null) {
+				throw new NullPointerException();
+			}
+			int hi = this.getFence();
+			Object[] q = MinHeap.this.queue;
+			int i = this.index;
+			this.index = hi;
+			for(; i < hi; i++) {
+				E e = (E) q[i];
+				if(e==null) {
+					throw new ConcurrentModificationException();
+				}
+				action.accept(e);
+			}
+			if(MinHeap.this.modCount!=this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+
+		@Override
+		public long estimateSize() {
+			return this.getFence() - this.index;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL;
+		}
+	}
+
 }
@@ -0,0 +1,506 @@
+package com.beardfish.heap;
+
+import java.util.*;
+
+/**
+ * Double ended priority queue backed by an array like {@link MinHeap}, laid out
+ * as a min-max heap (Atkinson et al., "Min-Max Heaps and Generalized Priority
+ * Queues"). Levels alternate: an element on an even level (the root is level 0)
+ * is the smallest of its subtree and one on an odd level is the largest. The
+ * minimum is the root and the maximum one of its two children, so both ends are
+ * read in O(1) and removed in O(log n).
+ *
+ * poll and peek work on the minimum. The iterator provides no guarantees of the
+ * order of iteration.
+ *
+ * @author Christian
+ *
+ * @param <E>
+ *            - the element stored in the heap
+ */
+
+public class MinMaxHeap<E> extends AbstractQueue<E> {
+
+    // static variable
+    private static final int DEFAULT_INITIAL_CAPACITY = 12;
+    // instance variables
+    private final Comparator<? super E> comparator;
+    private Object[] queue;
+    private int size = 0;
+    // modification count for the iterator
+    private int modCount = 0;
+
+    public MinMaxHeap() {
+        this(DEFAULT_INITIAL_CAPACITY, null);
+    }
+
+    public MinMaxHeap(int initialCapacity) {
+        this(initialCapacity, null);
+    }
+
+    public MinMaxHeap(int initialCapacity, Comparator<? super E> comparator) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.queue = new Object[initialCapacity];
+        this.comparator = comparator;
+    }
+
+    /**
+     * Creates a heap containing the elements of the collection, built bottom up in O(n)
+     * @param c
+     */
+    @SuppressWarnings("unchecked")
+    public MinMaxHeap(Collection<? extends E> c) {
+        this.comparator = null;
+        Object[] cArray = c.toArray();
+        if (cArray.getClass() != Object[].class) {
+            cArray = Arrays.copyOf(cArray, cArray.length, Object[].class);
+        }
+        for(int i = 0; i < cArray.length; i++) {
+            if(cArray[i]==null) {
+                throw new NullPointerException();
+            }
+        }
+        this.queue = cArray.length==0 ? new Object[DEFAULT_INITIAL_CAPACITY] : cArray;
+        this.size = cArray.length;
+        for(int i = (this.size >>> 1) - 1; i >= 0; i--) {
+            this.trickleDown(i, (E) this.queue[i], isMinLevel(i));
+        }
+    }
+
+    @Override
+    public boolean offer(E object) {
+        if(object==null) {
+            throw new NullPointerException();
+        }
+        this.modCount++;
+        int i = this.size;
+        if(i>=this.queue.length) {
+            this.grow(i+1);
+        }
+        this.size = i + 1;
+        this.fix(i, object);
+        return true;
+    }
+
+    /**
+     * Same as peekMin
+     */
+    @Override
+    public E peek() {
+        return this.peekMin();
+    }
+
+    /**
+     * Same as pollMin
+     */
+    @Override
+    public E poll() {
+        return this.pollMin();
+    }
+
+    /**
+     * @return the smallest element or null if the heap is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E peekMin() {
+        return this.size==0 ? null : (E) this.queue[0];
+    }
+
+    /**
+     * @return the largest element or null if the heap is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E peekMax() {
+        int i = this.maxIndex();
+        return i==-1 ? null : (E) this.queue[i];
+    }
+
+    /**
+     * Retrieves and removes the smallest element
+     * @return the smallest element or null if the heap is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E pollMin() {
+        if(this.size==0) {
+            return null;
+        }
+        E min = (E) this.queue[0];
+        this.removeAt(0);
+        return min;
+    }
+
+    /**
+     * Retrieves and removes the largest element
+     * @return the largest element or null if the heap is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E pollMax() {
+        int i = this.maxIndex();
+        if(i==-1) {
+            return null;
+        }
+        E max = (E) this.queue[i];
+        this.removeAt(i);
+        return max;
+    }
+
+    /**
+     * Remove the particular object if it exists
+     * @param o - the object to remove
+     * @return true if it exists; false otherwise
+     */
+    @Override
+    public boolean remove(Object o) {
+        if(o!=null) {
+            for(int i = 0; i < this.size; i++) {
+                if(o.equals(this.queue[i])) {
+                    this.removeAt(i);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    public Comparator<? super E> comparator() {
+        return this.comparator;
+    }
+
+    @Override
+    public void clear() {
+        this.modCount++;
+        for(int i = 0; i < this.size; i++) {
+            this.queue[i] = null;
+        }
+        this.size = 0;
+    }
+
+    @Override
+    public Object[] toArray() {
+        return Arrays.copyOf(this.queue, this.size);
+    }
+
+    /* iterator provides no guarantees of the order of iteration */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(this.toArray());
+    }
+
+    private void grow(int minCapacity) {
+        if(minCapacity<0) {
+            throw new OutOfMemoryError();
+        }
+        int oldCapacity = this.queue.length;
+        int newCapacity = ((oldCapacity<64)) ?
+                ((oldCapacity+1) * 2) :
+                ((oldCapacity/2) * 3);
+        if(newCapacity<0) {
+            newCapacity = Integer.MAX_VALUE;
+        }
+        if(newCapacity < minCapacity) {
+            newCapacity = minCapacity;
+        }
+        this.queue = Arrays.copyOf(this.queue, newCapacity);
+    }
+
+    /**
+     * @return the index of the largest element or -1 if the heap is empty
+     */
+    private int maxIndex() {
+        switch(this.size) {
+            case 0:
+                return -1;
+            case 1:
+                return 0;
+            case 2:
+                return 1;
+            default:
+                return this.compare(1, 2) >= 0 ? 1 : 2;
+        }
+    }
+
+    /**
+     * Remove the element at index and fill the hole with the last element
+     * @param index
+     */
+    @SuppressWarnings("unchecked")
+    private void removeAt(int index) {
+        this.modCount++;
+        int s = --this.size;
+        E last = (E) this.queue[s];
+        this.queue[s] = null;
+        if(s!=index) {
+            this.fix(index, last);
+        }
+    }
+
+    /**
+     * Place element into the hole at index. It moves up along the min or max
+     * ancestors when it is outside their bounds, otherwise it trickles down
+     * @param index - a hole whose subtrees are valid min-max heaps
+     * @param element
+     */
+    @SuppressWarnings("unchecked")
+    private void fix(int index, E element) {
+        boolean min = isMinLevel(index);
+        if(index > 0) {
+            int p = (index - 1) >>> 1;
+            E parent = (E) this.queue[p];
+            int c = this.compare(element, parent);
+            if(min ? c > 0 : c < 0) {
+                /* element belongs on the levels of the parent, the parent bounds the subtree at index */
+                this.bubbleUp(p, element, !min);
+                this.trickleDown(index, parent, min);
+                return;
+            }
+        }
+        if(index > 2) {
+            int g = (((index - 1) >>> 1) - 1) >>> 1;
+            if(this.better(element, (E) this.queue[g], min)) {
+                this.bubbleUp(index, element, min);
+            } else {
+                this.trickleDown(index, element, min);
+            }
+            return;
+        }
+        this.trickleDown(index, element, min);
+    }
+
+    /**
+     * Move element up along the grandparents, all on min levels or all on max levels
+     */
+    @SuppressWarnings("unchecked")
+    private void bubbleUp(int index, E element, boolean min) {
+        Object[] q = this.queue;
+        while(index > 2) {
+            int g = (((index - 1) >>> 1) - 1) >>> 1;
+            E grandparent = (E) q[g];
+            if(!this.better(element, grandparent, min)) {
+                break;
+            }
+            q[index] = grandparent;
+            index = g;
+        }
+        q[index] = element;
+    }
+
+    /**
+     * Move element down to its place below index, comparing it with the best of
+     * the children and grandchildren
+     * @param index - the hole
+     * @param element
+     * @param min - whether index is on a min level
+     */
+    @SuppressWarnings("unchecked")
+    private void trickleDown(int index, E element, boolean min) {
+        Object[] q = this.queue;
+        int n = this.size;
+        for(;;) {
+            int child = 2 * index + 1;
+            if(child >= n) {
+                break;
+            }
+            /* the best of at most two children and four grandchildren */
+            int m = child;
+            int end = Math.min(child + 2, n);
+            for(int i = child + 1; i < end; i++) {
+                if(this.better((E) q[i], (E) q[m], min)) {
+                    m = i;
+                }
+            }
+            int grandchild = 2 * child + 1;
+            end = Math.min(grandchild + 4, n);
+            for(int i = grandchild; i < end; i++) {
+                if(this.better((E) q[i], (E) q[m], min)) {
+                    m = i;
+                }
+            }
+            if(!this.better((E) q[m], element, min)) {
+                break;
+            }
+            q[index] = q[m];
+            index = m;
+            if(m < grandchild) {
+                /* a child has no descendants to compare with */
+                break;
+            }
+            int p = (m - 1) >>> 1;
+            if(this.better(element, (E) q[p], !min)) {
+                /* the element is beyond the bound kept by the parent of the grandchild, swap them */
+                E bound = (E) q[p];
+                q[p] = element;
+                element = bound;
+            }
+        }
+        q[index] = element;
+    }
+
+    /**
+     * @return true if the index lies on an even level, where elements are the minimum of their subtree
+     */
+    private static boolean isMinLevel(int index) {
+        return ((31 - Integer.numberOfLeadingZeros(index + 1)) & 1)==0;
+    }
+
+    /**
+     * @return true if a comes strictly before b on a min level (min) or strictly after it (max)
+     */
+    private boolean better(E a, E b, boolean min) {
+        int c = this.compare(a, b);
+        return min ? c < 0 : c > 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(int i, int j) {
+        return this.compare((E) this.queue[i], (E) this.queue[j]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        if(this.comparator!=null) {
+            return this.comparator.compare(a, b);
+        }
+        return ((Comparable<? super E>) a).compareTo(b);
+    }
+
+    /**
+     * Removing at index only moves elements along the ancestors of index and
+     * within its subtree. The last element can end up on an ancestor, before the
+     * cursor, and a visited ancestor can be pushed into the subtree, after it:
+     * the first is kept in forgetMeNot, the second in skipMe
+     */
+    private final class Itr implements Iterator<E> {
+
+        private int cursor = 0;
+
+        /* keeps track of the index of the cursor before a call to next() */
+        private int lastRet = -1;
+
+        /* keeps track of the last element returned by the forget me not */
+        private E lastRetElt = null;
+
+        private ArrayDeque<E> forgetMeNot = null;
+
+        /* visited elements moved past the cursor, compared by identity */
+        private ArrayList<Object> skipMe = null;
+
+        private int expectedModCount = MinMaxHeap.this.modCount;
+
+        @Override
+        public boolean hasNext() {
+            int skipped = this.skipMe==null ? 0 : this.skipMe.size();
+            return this.cursor + skipped < MinMaxHeap.this.size || (this.forgetMeNot!=null && !this.forgetMeNot.isEmpty());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if(this.expectedModCount!=MinMaxHeap.this.modCount) {
+                throw new ConcurrentModificationException();
+            }
+            while(this.cursor < MinMaxHeap.this.size) {
+                Object e = MinMaxHeap.this.queue[this.cursor++];
+                if(this.skipMe==null || !removeSame(this.skipMe, e)) {
+                    this.lastRet = this.cursor - 1;
+                    return (E) e;
+                }
+            }
+            /* need to make sure that if there are removals that elements are not forgotten */
+            if(this.forgetMeNot!=null) {
+                this.lastRet = -1;
+                this.lastRetElt = this.forgetMeNot.poll();
+                if(this.lastRetElt!=null) {
+                    return this.lastRetElt;
+                }
+            }
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void remove() {
+            if(this.expectedModCount!=MinMaxHeap.this.modCount) {
+                throw new ConcurrentModificationException();
+            }
+            Object[] q = MinMaxHeap.this.queue;
+            if(this.lastRet!=-1) {
+                int index = this.lastRet;
+                this.lastRet = -1;
+                Object last = q[MinMaxHeap.this.size - 1];
+                /* the ancestors of index, the only visited elements that can move */
+                ArrayList<Object> ancestors = new ArrayList<Object>();
+                for(int a = index; a > 0;) {
+                    a = (a - 1) >>> 1;
+                    ancestors.add(q[a]);
+                }
+                MinMaxHeap.this.removeAt(index);
+                this.cursor = index;
+                /* what is left of ancestors after the matches was pushed down, what is left of after came up */
+                ArrayList<Object> after = new ArrayList<Object>(ancestors.size());
+                for(int a = index; a > 0;) {
+                    a = (a - 1) >>> 1;
+                    after.add(q[a]);
+                }
+                for(int i = ancestors.size() - 1; i >= 0; i--) {
+                    if(removeSame(after, ancestors.get(i))) {
+                        ancestors.remove(i);
+                    }
+                }
+                for(Object e : ancestors) {
+                    if(this.forgetMeNot==null || !removeSame(this.forgetMeNot, e)) {
+                        if(this.skipMe==null) {
+                            this.skipMe = new ArrayList<Object>();
+                        }
+                        this.skipMe.add(e);
+                    }
+                }
+                if(!after.isEmpty() && (this.skipMe==null || !removeSame(this.skipMe, last))) {
+                    if(this.forgetMeNot==null) {
+                        this.forgetMeNot = new ArrayDeque<E>();
+                    }
+                    /* save for later iteration */
+                    this.forgetMeNot.add((E) last);
+                }
+            } else if(this.lastRetElt!=null) {
+                /* every index is behind the cursor, nothing is left to skip */
+                for(int i = 0; i < MinMaxHeap.this.size; i++) {
+                    if(q[i]==this.lastRetElt) {
+                        MinMaxHeap.this.removeAt(i);
+                        break;
+                    }
+                }
+                this.lastRetElt = null;
+            } else {
+                throw new IllegalStateException();
+            }
+            this.expectedModCount = MinMaxHeap.this.modCount;
+        }
+    }
+
+    /**
+     * Remove one occurrence of the object, compared by identity
+     * @return true if it was found
+     */
+    private static boolean removeSame(Collection<?> c, Object o) {
+        for(Iterator<?> it = c.iterator(); it.hasNext();) {
+            if(it.next()==o) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
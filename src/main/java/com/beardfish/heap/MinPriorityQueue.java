@@ -18,8 +18,12 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
     private static final int DEFAULT_INITIAL_CAPACITY = 12;
     // instance variables
     private final Comparator<? super E> comparator;
+    // number of children per node is 1 << arityShift
+    private final int arityShift;
     private transient Object[] queue;
     private int size = 0;
+    // counters, only kept once enableStats is called
+    private transient HeapStats stats;
     // modification count for the iterator
     private transient int modCount = 0;
 
@@ -30,14 +34,24 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
         this(DEFAULT_INITIAL_CAPACITY, null);
     }
 
+    /**
+     * Creates a queue containing the elements of the collection. Unless the
+     * collection is already a MinPriorityQueue the heap is built bottom up in O(n)
+     * @param c
+     */
     public MinPriorityQueue(Collection<? extends E> c) {
-        initFromCollection(c);
+        this.valueLookup = new HashMap<E,Integer>();
         if (c instanceof MinPriorityQueue) {
             this.comparator = (Comparator<? super E>) ((MinPriorityQueue<? extends E>) c).comparator();
+            this.arityShift = ((MinPriorityQueue<? extends E>) c).arityShift;
+            initFromCollection(c);
         } else {
             this.comparator = null;
+            this.arityShift = 1;
+            initFromCollection(c);
+            heapify();
         }
-        this.valueLookup = new HashMap<E,Integer>();
+        reindex();
     }
 
     public MinPriorityQueue(int initialCapacity) {
@@ -45,9 +59,21 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
     }
 
     public MinPriorityQueue(int initialCapacity, Comparator<? super E> comparator) {
+        this(initialCapacity, comparator, MinHeap.BINARY);
+    }
+
+    /**
+     * @param initialCapacity
+     * @param comparator - the ordering or null for the natural ordering
+     * @param arity - the number of children per node, a power of two between 2 and 64.
+     *              {@link MinHeap#QUATERNARY} and {@link MinHeap#OCTONARY} keep the children
+     *              of a node on one cache line and shorten the tree
+     */
+    public MinPriorityQueue(int initialCapacity, Comparator<? super E> comparator, int arity) {
         if (initialCapacity < 1) {
             throw new IllegalArgumentException();
         }
+        this.arityShift = MinHeap.arityShift(arity);
         this.queue = new Object[initialCapacity];
         this.comparator = comparator;
         this.valueLookup = new HashMap<E,Integer>();
@@ -55,16 +81,47 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
 
     public MinPriorityQueue(MinPriorityQueue<? extends E> c) {
         this.comparator = (Comparator<? super E>) c.comparator();
-        initFromCollection(c);
+        this.arityShift = c.arityShift;
         this.valueLookup = new HashMap<E,Integer>();
+        initFromCollection(c);
+        reindex();
     }
 
     private void initFromCollection(Collection<? extends E> c) {
         Object[] cArray = c.toArray();
         if (cArray.getClass() != Object[].class) {
             cArray = Arrays.copyOf(cArray, cArray.length, Object[].class);
-            this.queue = cArray;
-            this.size = cArray.length;
+        }
+        for(int i = 0; i < cArray.length; i++) {
+            if(cArray[i]==null) {
+                throw new NullPointerException();
+            }
+        }
+        this.queue = cArray;
+        this.size = cArray.length;
+    }
+
+    /**
+     * Establish the heap property over the whole array bottom up (Floyd)
+     * in O(n). The lookup table is not maintained, call reindex afterwards
+     */
+    @SuppressWarnings("unchecked")
+    private void heapify() {
+        if(this.size < 2) {
+            return;
+        }
+        for(int i = this.getParent(this.size - 1); i >= 0; i--) {
+            this.percolateDown(i, (E) this.queue[i]);
+        }
+    }
+
+    /**
+     * Rebuild the lookup table from the positions in the array
+     */
+    @SuppressWarnings("unchecked")
+    private void reindex() {
+        for(int i = 0; i < this.size; i++) {
+            this.valueLookup.put((E) this.queue[i], i);
         }
     }
 
@@ -73,11 +130,53 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
         return this.offer(object);
     }
 
+    /**
+     * Adds all of the elements of the collection. Large batches are appended
+     * and the heap is rebuilt in linear time instead of offering one at a time
+     * @param c
+     * @return true if the queue changed
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        if(c==null) {
+            throw new NullPointerException();
+        }
+        if(c==this) {
+            throw new IllegalArgumentException();
+        }
+        int n = this.size;
+        int m = c.size();
+        if(!MinHeap.rebuildIsCheaper(n, m)) {
+            return super.addAll(c);
+        }
+        Object[] cArray = c.toArray();
+        m = cArray.length;
+        for(int i = 0; i < m; i++) {
+            if(cArray[i]==null) {
+                throw new NullPointerException();
+            }
+        }
+        if(m==0) {
+            return false;
+        }
+        this.modCount++;
+        if(n + m > this.queue.length) {
+            grow(n + m);
+        }
+        System.arraycopy(cArray, 0, this.queue, n, m);
+        this.size = n + m;
+        heapify();
+        reindex();
+        return true;
+    }
+
     @Override
     public boolean offer(E object) {
         if(object==null) {
             throw new NullPointerException();
         }
+        HeapStats st = this.stats;
+        long start = st!=null ? System.nanoTime() : 0L;
 		/* update the modCount to make sure you invalidate the iterator */
         this.modCount++;
 
@@ -93,10 +192,14 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
 
         if(i==0) {
             this.queue[0] = object;
+            this.valueLookup.put(object,0);
         } else {
             percolateUp(i,object);
         }
 
+        if(st!=null) {
+            st.operation(this, "offer", start, this.size);
+        }
         return true;
     }
 
@@ -122,7 +225,13 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
             return null;
         }
 
-        E head = this.removeAt(0);
+        HeapStats st = this.stats;
+        long start = st!=null ? System.nanoTime() : 0L;
+        E head = (E) this.queue[0];
+        this.removeAt(0);
+        if(st!=null) {
+            st.operation(this, "poll", start, this.size);
+        }
 
         return head;
 
@@ -142,6 +251,40 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
         return this.comparator;
     }
 
+    /**
+     * Start counting comparisons, moves, sift depths and resizes and timing
+     * offer, poll, remove and decreaseKey. Until then the counters cost one null
+     * check per sift
+     * @return the statistics of this heap, see {@link HeapStats#register(String)} to publish them
+     */
+    public HeapStats enableStats() {
+        if(this.stats==null) {
+            this.stats = new HeapStats(this.queue.length);
+        }
+        return this.stats;
+    }
+
+    /**
+     * Stop counting, the statistics object keeps its last values
+     */
+    public void disableStats() {
+        this.stats = null;
+    }
+
+    /**
+     * @return the statistics or null if they are not enabled
+     */
+    public HeapStats stats() {
+        return this.stats;
+    }
+
+    /**
+     * @return the number of children per node
+     */
+    public int arity() {
+        return 1 << this.arityShift;
+    }
+
     /**
      * Grow the heap by the integer specified
      * @param minCapacity the minimum capacity to increase by
@@ -150,6 +293,8 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
         if(minCapacity<0) {
             throw new OutOfMemoryError();
         }
+        HeapStats st = this.stats;
+        long start = st!=null ? System.nanoTime() : 0L;
         int oldCapacity = this.queue.length;
         int newCapacity = ((oldCapacity<64)) ?
                                   ((oldCapacity+1) * 2) :
@@ -161,62 +306,73 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
             newCapacity = minCapacity;
         }
         this.queue = Arrays.copyOf(this.queue,newCapacity);
+        if(st!=null) {
+            st.resize(this, oldCapacity, newCapacity, start);
+        }
     }
 
     /**
      * Percolate the element up until you find one that is less than or equal to
-     * the element you are trying to add
+     * the element you are trying to add. The element is carried in a local and
+     * parents are moved down into the hole, so each level costs one store
+     * @return the index the element ended up at
      */
-    private void percolateUp(int index, E element) {
+    private int percolateUp(int index, E element) {
         if(this.comparator!=null) {
-            percolateUpUsingComparator(index,element);
+            return percolateUpUsingComparator(index,element);
         } else {
-            percolateUpComparable(index,element);
+            return percolateUpComparable(index,element);
         }
 
     }
 
     @SuppressWarnings("unchecked")
-    private void percolateUpUsingComparator(int index, E element) {
-        if(index==0) {
-            return;
-        }
-        int p = this.getParent(index);
-        E parent = (E) this.queue[p];
-        if(this.comparator.compare(element,parent)<0) {
-            this.queue[index] = parent;
-            this.queue[p] = element;
-            // NEW
+    private int percolateUpUsingComparator(int index, E element) {
+        Object[] q = this.queue;
+        int depth = 0;
+        while(index>0) {
+            int p = this.getParent(index);
+            E parent = (E) q[p];
+            if(this.comparator.compare(element,parent)>=0) {
+                break;
+            }
+            q[index] = parent;
             this.valueLookup.put(parent,index);
-            this.valueLookup.put(element,p);
-            this.percolateUpUsingComparator(p, element);
-        } else {
-            this.queue[index] = element;
-            // NEW
-            this.valueLookup.put(element,index);
+            index = p;
+            depth++;
         }
+        q[index] = element;
+        this.valueLookup.put(element,index);
+        if(this.stats!=null) {
+            /* the loop only ends without a comparison at the root */
+            this.stats.sift(depth, index>0 ? depth + 1 : depth, depth + 1);
+        }
+        return index;
     }
 
     @SuppressWarnings("unchecked")
-    private void percolateUpComparable(int index, E element) {
-        if(index==0) {
-            return;
-        }
+    private int percolateUpComparable(int index, E element) {
+        Object[] q = this.queue;
         Comparable<? super E> key = (Comparable<? super E>) element;
-        int p = this.getParent(index);
-        E parent = (E) this.queue[p];
-        if(key.compareTo(parent)<0) {
-            this.queue[index] = parent;
-            this.queue[p] = element;
-            // NEW
+        int depth = 0;
+        while(index>0) {
+            int p = this.getParent(index);
+            E parent = (E) q[p];
+            if(key.compareTo(parent)>=0) {
+                break;
+            }
+            q[index] = parent;
             this.valueLookup.put(parent,index);
-            this.valueLookup.put(element,p);
-            this.percolateUpComparable(p,element);
-        } else {
-            this.queue[index] = element;
-            // NEW
-            this.valueLookup.put(element,index);
+            index = p;
+            depth++;
+        }
+        q[index] = element;
+        this.valueLookup.put(element,index);
+        if(this.stats!=null) {
+            /* the loop only ends without a comparison at the root */
+            this.stats.sift(depth, index>0 ? depth + 1 : depth, depth + 1);
         }
+        return index;
     }
 
 
@@ -242,36 +398,45 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
      * @return true if it exists; false otherwise
      */
     public boolean remove(Object o) {
+        HeapStats st = this.stats;
+        long start = st!=null ? System.nanoTime() : 0L;
         int index = indexOf(o);
         if(index!=-1) {
             removeAt(index);
+            if(st!=null) {
+                st.operation(this, "remove", start, this.size);
+            }
             return true;
         }
         return false;
     }
 
     /**
-     * Remove the object at the specified index
+     * Remove the object at the specified index. The hole left behind is filled
+     * with the last element
      * @param index
-     * @return the object removed
+     * @return the last element if it had to move above index (so an iterator
+     *         that already passed index would miss it); null otherwise
      */
+    @SuppressWarnings("unchecked")
     private E removeAt(int index) {
         assert index >= 0 && index < this.size();
         this.modCount++;
         int s = --size;
         E element = (E) this.queue[index];
-		/* last element */
+        this.valueLookup.remove(element);
+        /* last element */
         if(s==index) {
             this.queue[index] = null;
         } else {
-			/* place the last element at the index of the removed element */
-            this.queue[index] = this.queue[s];
+            /* fill the hole at index with the last element */
+            E moved = (E) this.queue[s];
             this.queue[s] = null;
-            this.percolateDown(index,(E) this.queue[index]);
+            if(this.percolateBottomUp(index,moved)<index) {
+                return moved;
+            }
         }
-        /* set the new size */
-        this.size = s;
-        return element;
+        return null;
 
     }
 
@@ -287,9 +452,9 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
 
 
     /**
-     * percolateDown until you find that both children are less than the element
-     * while percolating you should replace with the smaller of the children to maintain
-     * the heap property
+     * percolateDown until you find that all children are greater than or equal to the element
+     * while percolating you should move up the smallest of the children into the hole to
+     * maintain the heap property
      * @param index
      * @param element
      */
@@ -308,22 +473,24 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
      */
     @SuppressWarnings("unchecked")
     private void percolateDownWithComparator(int index, E element) {
-        if(index==this.size) {
-            return;
-        }
-        int childIndex = this.getSmallerChildComparator(index);
-        if(childIndex!=-1) {
-            E child = (E) this.queue[childIndex];
-            if(this.comparator.compare(element,child)>0) {
-                this.queue[childIndex] = element;
-                this.queue[index] = child;
-                // NEW
-                this.valueLookup.put(element,childIndex);
-                this.valueLookup.put(child,index);
-                this.percolateDownWithComparator(childIndex, element);
+        Object[] q = this.queue;
+        int childIndex;
+        int depth = 0;
+        while((childIndex = this.getSmallerChildComparator(index))!=-1) {
+            E child = (E) q[childIndex];
+            if(this.comparator.compare(element,child)<=0) {
+                break;
             }
+            q[index] = child;
+            this.valueLookup.put(child,index);
+            index = childIndex;
+            depth++;
         }
-
+        q[index] = element;
+        if(this.stats!=null) {
+            this.stats.sift(depth, childIndex!=-1 ? depth + 1 : depth, depth + 1);
+        }
+        this.valueLookup.put(element,index);
     }
 
     /**
@@ -333,56 +500,102 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
      */
     @SuppressWarnings("unchecked")
     private void percolateDownComparable(int index, E element) {
-        if(index==this.size) {
-            return;
-        }
+        Object[] q = this.queue;
         Comparable<? super E> key = (Comparable<? super E>) element;
-        int childIndex = this.getSmallerChildComparable(index);
-        if(childIndex!=-1) {
-            E child = (E) this.queue[childIndex];
-            if(key.compareTo(child)>0) {
-                this.queue[childIndex] = element;
-                this.queue[index] = child;
-                // NEW
-                this.valueLookup.put(element,childIndex);
-                this.valueLookup.put(child,index);
-                this.percolateDownComparable(childIndex, element);
+        int childIndex;
+        int depth = 0;
+        while((childIndex = this.getSmallerChildComparable(index))!=-1) {
+            E child = (E) q[childIndex];
+            if(key.compareTo(child)<=0) {
+                break;
             }
+            q[index] = child;
+            this.valueLookup.put(child,index);
+            index = childIndex;
+            depth++;
+        }
+        q[index] = element;
+        if(this.stats!=null) {
+            this.stats.sift(depth, childIndex!=-1 ? depth + 1 : depth, depth + 1);
+        }
+        this.valueLookup.put(element,index);
+    }
+
+    /**
+     * Fill the hole at index with element using bottom-up deletion: the hole is
+     * first walked down to a leaf along the smallest children, comparing only
+     * children with each other, and the element is then percolated up from the
+     * leaf. The element usually belongs near the bottom so the walk back up is
+     * short, which saves about one comparison per level over percolateDown
+     * @param index
+     * @param element
+     * @return the index the element ended up at
+     */
+    @SuppressWarnings("unchecked")
+    private int percolateBottomUp(int index, E element) {
+        Object[] q = this.queue;
+        int childIndex;
+        int depth = 0;
+        HeapStats st = this.stats;
+        if(this.comparator!=null) {
+            while((childIndex = this.getSmallerChildComparator(index))!=-1) {
+                q[index] = q[childIndex];
+                this.valueLookup.put((E) q[index],index);
+                index = childIndex;
+                depth++;
+            }
+            if(st!=null) {
+                /* the walk down only compares siblings, counted where they are scanned */
+                st.sift(depth, 0, depth);
+            }
+            return this.percolateUpUsingComparator(index, element);
+        } else {
+            while((childIndex = this.getSmallerChildComparable(index))!=-1) {
+                q[index] = q[childIndex];
+                this.valueLookup.put((E) q[index],index);
+                index = childIndex;
+                depth++;
+            }
+            if(st!=null) {
+                /* the walk down only compares siblings, counted where they are scanned */
+                st.sift(depth, 0, depth);
+            }
+            return this.percolateUpComparable(index, element);
         }
     }
 
     /**
      * Retrieve the parent index of a given item
-     * Subtracting 1 and doing an unsigned right shift is the same as dividing by 2 and doing the floor operation
+     * Subtracting 1 and doing an unsigned right shift by log2(arity) is the same as dividing by the arity and doing the floor operation
      * @param index
      * @return the parent index
      */
     private int getParent(int index) {
-        // even index
-        return (index-1) >>> 1;
+        return (index-1) >>> this.arityShift;
     }
 
     /**
      * Calculates the children for a given index
      * Checks to see which one is smaller and returns the index
-     * It will return the index of a null item if its at the end
+     * The children of index are stored contiguously starting at arity*index+1
      * @param index
      * @return index of smaller child of -1 if no children
      */
     @SuppressWarnings("unchecked")
     private int getSmallerChildComparator(int index) {
-        int c = 0;
-        int leftChild = (2*index)+1;
-        int rightChild = (2*index)+2;
-        if (this.queue[leftChild]==null) {
-            c = -1;
-        } else if(this.queue[rightChild]==null) {
-            c = leftChild;
-        } else {
-            if(this.comparator.compare((E)this.queue[leftChild],(E)this.queue[rightChild])<0) {
-                c = leftChild;
-            } else {
-                c = rightChild;
+        long first = ((long) index << this.arityShift) + 1;
+        if (first>=this.size) {
+            return -1;
+        }
+        int c = (int) first;
+        int end = (int) Math.min(first + (1 << this.arityShift), this.size);
+        if(this.stats!=null) {
+            this.stats.comparisons += end - c - 1;
+        }
+        E smallest = (E) this.queue[c];
+        for(int i = c + 1; i < end; i++) {
+            if(this.comparator.compare((E) this.queue[i],smallest)<0) {
+                smallest = (E) this.queue[c = i];
             }
         }
         return c;
@@ -391,25 +604,25 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
     /**
      * Calculates the children for a given index
      * Checks to see which one is smaller and returns the index
-     * It will return the index of a null item if its at the end
+     * The children of index are stored contiguously starting at arity*index+1
      * @param index
      * @return index of a smaller child or -1 if no children
      */
     @SuppressWarnings("unchecked")
     private int getSmallerChildComparable(int index) {
-        int c = 0;
-        int leftChild = (2*index)+1;
-        int rightChild = (2*index)+2;
-        if (this.queue[leftChild]==null) {
-            c = -1;
-        } else if(this.queue[rightChild]==null) {
-            c = leftChild;
-        } else {
-            Comparable<? super E> key = (Comparable<? super E>) this.queue[leftChild];
-            if(key.compareTo((E)this.queue[rightChild])<0) {
-                c = leftChild;
-            } else {
-                c = rightChild;
+        long first = ((long) index << this.arityShift) + 1;
+        if (first>=this.size) {
+            return -1;
+        }
+        int c = (int) first;
+        int end = (int) Math.min(first + (1 << this.arityShift), this.size);
+        if(this.stats!=null) {
+            this.stats.comparisons += end - c - 1;
+        }
+        Comparable<? super E> smallest = (Comparable<? super E>) this.queue[c];
+        for(int i = c + 1; i < end; i++) {
+            if(smallest.compareTo((E) this.queue[i])>0) {
+                smallest = (Comparable<? super E>) this.queue[c = i];
             }
         }
         return c;
@@ -426,6 +639,7 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
         for(int i = 0; i< this.size; i++) {
             this.queue[i] = null;
         }
+        this.valueLookup.clear();
         this.size=0;
     }
 
@@ -446,22 +660,29 @@ public class MinPriorityQueue<E> extends AbstractQueue<E> {
 
 
     /**
-     * Decrease the key at the specified index
+     * Restore the heap after the key of a queued element has been decreased.
+     * For an indexed queue without hashing see {@link IndexedMinPriorityQueue}
      * @param element
-     * @return true if key decreased; false otherwise
+     * @return true if key decreased; false if the element is not queued
      */
     public boolean decreaseKey(E element) {
-        int index = this.valueLookup.get(element);
-        /* check out of bounds */
-        if(index<0 || index>this.queue.length) {
-            return false;
-        }
         /* check NullPointerException */
         if(element==null) {
             throw new NullPointerException();
         }
+        HeapStats st = this.stats;
+        long start = st!=null ? System.nanoTime() : 0L;
+        Integer index = this.valueLookup.get(element);
+        /* check the element is still queued */
+        if(index==null || index>=this.size) {
+            return false;
+        }
+        this.modCount++;
         this.queue[index]=element;
-        this.percolateDown(index,element);
+        this.percolateUp(index,element);
+        if(st!=null) {
+            st.operation(this, "decreaseKey", start, this.size);
+        }
         return true;
     }
 
@@ -0,0 +1,385 @@
+package com.beardfish.heap;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Relaxed concurrent priority queue made of many {@link MinHeap} shards, each
+ * guarded by its own lock (a MultiQueue). offer puts the element into a randomly
+ * chosen shard and poll samples two random shards and removes the head of the one
+ * with the smaller head. Locks are tried first, a thread that finds a shard
+ * busy backs off briefly and picks another one, so throughput scales with the
+ * number of shards instead of serializing on a single root. After a bounded
+ * number of failed attempts both offer and poll block on a lock instead of
+ * spinning on.
+ *
+ * The price is ordering: poll returns an element close to the minimum rather than
+ * the minimum. With m shards the expected rank of a polled element (0 being the
+ * true minimum) is O(m) and it is O(m log m) with high probability
+ * (Rihani, Sanders and Dementiev, "MultiQueues: Simple Relaxed Concurrent Priority
+ * Queues"; Alistarh et al., "The Power of Choice in Priority Scheduling"). With a
+ * single shard the queue is exact.
+ *
+ * poll only returns null after it has found every shard empty. size, peek and
+ * iteration are weakly consistent.
+ *
+ * @author Christian
+ *
+ * @param <E>
+ *            - the element stored in the heap
+ */
+
+public class MultiQueue<E> extends AbstractQueue<E> {
+
+    // shards per processor used by the default constructor
+    private static final int DEFAULT_SHARDS_PER_PROCESSOR = 2;
+    // sampling rounds before poll falls back to scanning every shard
+    private static final int MAX_SAMPLING_ROUNDS = 8;
+    // failed tryLock attempts before offer blocks on a shard lock
+    private static final int MAX_OFFER_ATTEMPTS = 16;
+    // cap on the random number of spin waits between attempts, a power of two
+    private static final int MAX_BACKOFF_SPINS = 64;
+    // instance variables
+    private final Comparator<? super E> comparator;
+    private final Shard<E>[] shards;
+
+    /**
+     * A heap together with the lock that guards it. The head and size are
+     * published in volatile fields so they can be read without the lock
+     */
+    private static final class Shard<E> extends ReentrantLock {
+
+        private static final long serialVersionUID = 1L;
+
+        final MinHeap<E> heap;
+
+        volatile E top;
+
+        volatile int size;
+
+        Shard(Comparator<? super E> comparator, int arity) {
+            this.heap = new MinHeap<E>(12, comparator, arity);
+        }
+
+        /* refresh the published head and size, call with the lock held */
+        void publish() {
+            this.top = this.heap.peek();
+            this.size = this.heap.size();
+        }
+    }
+
+    public MultiQueue() {
+        this(DEFAULT_SHARDS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    public MultiQueue(int shards) {
+        this(shards, null);
+    }
+
+    public MultiQueue(int shards, Comparator<? super E> comparator) {
+        this(shards, comparator, MinHeap.BINARY);
+    }
+
+    /**
+     * @param shards - the number of sub heaps, more shards means less contention
+     *               and a larger rank error
+     * @param comparator - the ordering or null for the natural ordering
+     * @param arity - the number of children per node of every sub heap
+     */
+    @SuppressWarnings("unchecked")
+    public MultiQueue(int shards, Comparator<? super E> comparator, int arity) {
+        if (shards < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.comparator = comparator;
+        this.shards = (Shard<E>[]) new Shard<?>[shards];
+        for(int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard<E>(comparator, arity);
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if(e==null) {
+            throw new NullPointerException();
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Shard<E> shard;
+        for(int attempt = 1; ; attempt++) {
+            shard = this.shards[random.nextInt(this.shards.length)];
+            if(shard.tryLock()) {
+                break;
+            }
+            if(attempt==MAX_OFFER_ATTEMPTS) {
+                /* every shard tried looked busy, wait for this one instead of spinning on */
+                shard.lock();
+                break;
+            }
+            backoff(random, attempt);
+        }
+        try {
+            shard.heap.offer(e);
+            shard.publish();
+            return true;
+        } finally {
+            shard.unlock();
+        }
+    }
+
+    /**
+     * Spin for a random number of iterations, the bound doubling with every attempt
+     * @param random
+     * @param attempt - the number of failed attempts so far, from 1
+     */
+    private static void backoff(ThreadLocalRandom random, int attempt) {
+        int bound = Math.min(1 << Math.min(attempt, 30), MAX_BACKOFF_SPINS);
+        for(int spins = random.nextInt(bound); spins >= 0; spins--) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Retrieves and removes an element close to the minimum
+     * @return an element of small rank or null if every shard is empty
+     */
+    @Override
+    public E poll() {
+        int n = this.shards.length;
+        if(n > 1) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for(int round = 0; round < MAX_SAMPLING_ROUNDS; round++) {
+                int i = random.nextInt(n);
+                int j = random.nextInt(n - 1);
+                if(j >= i) {
+                    j++;
+                }
+                Shard<E> a = this.shards[i];
+                Shard<E> b = this.shards[j];
+                E topA = a.top;
+                E topB = b.top;
+                if(topA==null && topB==null) {
+                    continue;
+                }
+                Shard<E> best = (topB==null || (topA!=null && this.compare(topA, topB)<=0)) ? a : b;
+                if(best.tryLock()) {
+                    try {
+                        if(!best.heap.isEmpty()) {
+                            E head = best.heap.poll();
+                            best.publish();
+                            return head;
+                        }
+                    } finally {
+                        best.unlock();
+                    }
+                } else {
+                    backoff(random, round + 1);
+                }
+            }
+        }
+        return this.pollScan();
+    }
+
+    /**
+     * Visit every shard in turn, blocking on its lock, and remove the head of the
+     * first non empty one
+     * @return the removed element or null if every shard was empty when visited
+     */
+    private E pollScan() {
+        int n = this.shards.length;
+        int start = n == 1 ? 0 : ThreadLocalRandom.current().nextInt(n);
+        for(int k = 0; k < n; k++) {
+            Shard<E> shard = this.shards[(start + k) % n];
+            if(shard.top==null) {
+                continue;
+            }
+            shard.lock();
+            try {
+                if(!shard.heap.isEmpty()) {
+                    E head = shard.heap.poll();
+                    shard.publish();
+                    return head;
+                }
+            } finally {
+                shard.unlock();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the smallest published head over all shards or null if all are empty
+     */
+    @Override
+    public E peek() {
+        E best = null;
+        for(Shard<E> shard : this.shards) {
+            E top = shard.top;
+            if(top!=null && (best==null || this.compare(top, best)<0)) {
+                best = top;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public int size() {
+        long total = 0;
+        for(Shard<E> shard : this.shards) {
+            total += shard.size;
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for(Shard<E> shard : this.shards) {
+            if(shard.size!=0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Comparator<? super E> comparator() {
+        return this.comparator;
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int shards() {
+        return this.shards.length;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if(o==null) {
+            return false;
+        }
+        for(Shard<E> shard : this.shards) {
+            shard.lock();
+            try {
+                if(shard.heap.remove(o)) {
+                    shard.publish();
+                    return true;
+                }
+            } finally {
+                shard.unlock();
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if(o==null) {
+            return false;
+        }
+        for(Shard<E> shard : this.shards) {
+            shard.lock();
+            try {
+                if(shard.heap.contains(o)) {
+                    return true;
+                }
+            } finally {
+                shard.unlock();
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        for(Shard<E> shard : this.shards) {
+            shard.lock();
+            try {
+                shard.heap.clear();
+                shard.publish();
+            } finally {
+                shard.unlock();
+            }
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        return this.snapshot(null);
+    }
+
+    /**
+     * Copy the elements of every shard, locking one shard at a time
+     * @param owners - receives the shard of every element if not null
+     * @return the elements
+     */
+    private Object[] snapshot(List<Shard<E>> owners) {
+        List<Object> all = new ArrayList<Object>();
+        for(Shard<E> shard : this.shards) {
+            shard.lock();
+            try {
+                Object[] elements = shard.heap.toArray();
+                all.addAll(Arrays.asList(elements));
+                if(owners!=null) {
+                    owners.addAll(Collections.nCopies(elements.length, shard));
+                }
+            } finally {
+                shard.unlock();
+            }
+        }
+        return all.toArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        if(this.comparator!=null) {
+            return this.comparator.compare(a, b);
+        }
+        return ((Comparable<? super E>) a).compareTo(b);
+    }
+
+    /* iterates over a snapshot of every shard, in no particular order. remove takes
+       out the very element returned, found by identity in the shard it was in */
+    @Override
+    public Iterator<E> iterator() {
+        final List<Shard<E>> owners = new ArrayList<Shard<E>>();
+        final Object[] snapshot = this.snapshot(owners);
+        return new Iterator<E>() {
+
+            private int cursor = 0;
+
+            private int lastRet = -1;
+
+            @Override
+            public boolean hasNext() {
+                return this.cursor < snapshot.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if(this.cursor >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                return (E) snapshot[this.lastRet = this.cursor++];
+            }
+
+            @Override
+            public void remove() {
+                if(this.lastRet < 0) {
+                    throw new IllegalStateException();
+                }
+                Shard<E> shard = owners.get(this.lastRet);
+                shard.lock();
+                try {
+                    if(shard.heap.removeEq(snapshot[this.lastRet])) {
+                        shard.publish();
+                    }
+                } finally {
+                    shard.unlock();
+                }
+                this.lastRet = -1;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,276 @@
+package com.beardfish.heap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.NoSuchElementException;
+
+/**
+ * MinHeap of fixed width records stored outside the Java heap. Every record is a
+ * long priority followed by a payload of a width chosen at construction time
+ * (8 bytes holds a long id). The records live in direct memory so the heap adds
+ * nothing for the garbage collector to scan and can grow past the Java heap limit.
+ *
+ * Sifting follows {@link MinHeap}: a configurable arity, a hole that is moved
+ * instead of swapping records and bottom-up deletion on poll. Only the long keys
+ * are ever compared.
+ *
+ * Memory is returned once the heap is released or collected.
+ *
+ * @author Christian
+ */
+
+public class OffHeapMinHeap {
+
+    // static variable
+    private static final int DEFAULT_INITIAL_CAPACITY = 12;
+    // instance variables
+    private final RecordBuffer records;
+    private final int arityShift;
+    // holds the record being sifted during poll
+    private final ByteBuffer scratch;
+    private int size = 0;
+
+    /**
+     * @param payloadWidth - the number of payload bytes stored with every key
+     */
+    public OffHeapMinHeap(int payloadWidth) {
+        this(payloadWidth, DEFAULT_INITIAL_CAPACITY, MinHeap.BINARY);
+    }
+
+    /**
+     * @param payloadWidth - the number of payload bytes stored with every key
+     * @param initialCapacity - the number of records to allocate up front
+     * @param arity - the number of children per node, a power of two between 2 and 64
+     */
+    public OffHeapMinHeap(int payloadWidth, int initialCapacity, int arity) {
+        this(new RecordBuffer(payloadWidth), initialCapacity, arity);
+    }
+
+    OffHeapMinHeap(RecordBuffer records, int initialCapacity, int arity) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.arityShift = MinHeap.arityShift(arity);
+        this.records = records;
+        this.records.ensureCapacity(initialCapacity);
+        this.scratch = ByteBuffer.allocateDirect(records.stride).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Inserts a record whose payload starts with the given long
+     * @param key - the priority
+     * @param payload - stored in the first 8 payload bytes
+     * @return true
+     * @throws IllegalStateException if the payload is narrower than 8 bytes
+     */
+    public boolean offer(long key, long payload) {
+        if(this.records.payloadWidth < 8) {
+            throw new IllegalStateException("payload is narrower than a long");
+        }
+        int index = this.place(key);
+        this.records.putPayloadLong(index, 0, payload);
+        return true;
+    }
+
+    /**
+     * Inserts a record
+     * @param key - the priority
+     * @param payload - at most payloadWidth bytes, shorter payloads are zero padded
+     * @return true
+     */
+    public boolean offer(long key, byte[] payload) {
+        if(payload.length > this.records.payloadWidth) {
+            throw new IllegalArgumentException("payload is wider than " + this.records.payloadWidth + " bytes");
+        }
+        int index = this.place(key);
+        this.records.putPayload(index, payload);
+        return true;
+    }
+
+    /**
+     * @return the smallest key
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public long peekKey() {
+        this.checkNotEmpty();
+        return this.records.key(0);
+    }
+
+    /**
+     * @return the first 8 payload bytes of the head as a long
+     * @throws NoSuchElementException if the heap is empty
+     * @throws IllegalStateException if the payload is narrower than 8 bytes
+     */
+    public long peekPayload() {
+        if(this.records.payloadWidth < 8) {
+            throw new IllegalStateException("payload is narrower than a long");
+        }
+        this.checkNotEmpty();
+        return this.records.payloadLong(0, 0);
+    }
+
+    /**
+     * Copy the payload of the head
+     * @param dst - receives up to payloadWidth bytes
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public void peekPayload(byte[] dst) {
+        this.checkNotEmpty();
+        this.records.getPayload(0, dst);
+    }
+
+    /**
+     * Removes the head and returns its payload, read the key with peekKey first
+     * if it is needed
+     * @return the first 8 payload bytes of the removed head as a long
+     * @throws NoSuchElementException if the heap is empty
+     * @throws IllegalStateException if the payload is narrower than 8 bytes
+     */
+    public long pollPayload() {
+        long payload = this.peekPayload();
+        this.removeTop();
+        return payload;
+    }
+
+    /**
+     * Removes the head
+     * @param payloadDst - receives the payload of the head, may be null
+     * @return the key of the removed head
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public long poll(byte[] payloadDst) {
+        long key = this.peekKey();
+        if(payloadDst!=null) {
+            this.records.getPayload(0, payloadDst);
+        }
+        this.removeTop();
+        return key;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size==0;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * @return the number of payload bytes stored with every key
+     */
+    public int payloadWidth() {
+        return this.records.payloadWidth;
+    }
+
+    /**
+     * @return the number of children per node
+     */
+    public int arity() {
+        return 1 << this.arityShift;
+    }
+
+    /**
+     * @return the number of records that fit before more memory is allocated
+     */
+    public long capacity() {
+        return this.records.capacity();
+    }
+
+    /**
+     * Empty the heap and drop its memory, the heap allocates again on the next offer
+     */
+    public void release() {
+        this.size = 0;
+        this.records.release();
+    }
+
+    private void checkNotEmpty() {
+        if(this.size==0) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    /**
+     * Make room for a new key by percolating a hole up from the end
+     * @param key
+     * @return the index the caller must write the payload to
+     */
+    private int place(long key) {
+        int i = this.size;
+        if(i==Integer.MAX_VALUE) {
+            throw new IllegalStateException("heap is full");
+        }
+        this.records.ensureCapacity((long) i + 1);
+        this.size = i + 1;
+        i = this.percolateUp(i, key);
+        this.records.putKey(i, key);
+        return i;
+    }
+
+    /**
+     * Move parents with a larger key down into the hole
+     * @param index - the hole
+     * @param key
+     * @return the final position of the hole
+     */
+    private int percolateUp(int index, long key) {
+        RecordBuffer r = this.records;
+        while(index>0) {
+            int p = (index-1) >>> this.arityShift;
+            if(key>=r.key(p)) {
+                break;
+            }
+            r.copy(p, index);
+            index = p;
+        }
+        return index;
+    }
+
+    /**
+     * Remove the head with bottom-up deletion, as in {@link MinHeap}
+     */
+    private void removeTop() {
+        int s = --this.size;
+        if(s==0) {
+            return;
+        }
+        RecordBuffer r = this.records;
+        r.save(s, this.scratch);
+        int hole = 0;
+        int child;
+        while((child = this.getSmallerChild(hole))!=-1) {
+            r.copy(child, hole);
+            hole = child;
+        }
+        hole = this.percolateUp(hole, this.scratch.getLong(0));
+        r.restore(this.scratch, hole);
+    }
+
+    /**
+     * @param index
+     * @return index of the child with the smallest key or -1 if no children
+     */
+    private int getSmallerChild(int index) {
+        long first = ((long) index << this.arityShift) + 1;
+        if(first>=this.size) {
+            return -1;
+        }
+        RecordBuffer r = this.records;
+        int c = (int) first;
+        int end = (int) Math.min(first + (1 << this.arityShift), this.size);
+        long smallest = r.key(c);
+        for(int i = c + 1; i < end; i++) {
+            long k = r.key(i);
+            if(k<smallest) {
+                smallest = k;
+                c = i;
+            }
+        }
+        return c;
+    }
+
+}
@@ -0,0 +1,503 @@
+package com.beardfish.heap;
+
+import java.util.*;
+
+/**
+ * Pairing heap: a heap ordered multiway tree kept as leftmost child / right
+ * sibling links. offer and meld link two roots with a single comparison and are
+ * O(1), poll combines the children of the root in two passes (pair up left to
+ * right, then meld right to left) for O(log n) amortized. decreaseKey cuts the
+ * node out of its parent and links it with the root, O(1) in practice
+ * (o(log n) amortized).
+ *
+ * insert returns the {@link Node} holding the element, the handle used by
+ * decreaseKey and remove. Every node records the heap it belongs to, so a handle
+ * of another heap or of an element that has left the heap is rejected. Removed
+ * nodes that were never handed out (elements added with offer) are recycled
+ * through a small pool to cut allocation; handles returned by insert are never
+ * reused, so a stale handle cannot reach another element.
+ *
+ * @author Christian
+ *
+ * @param <E>
+ *            - the element stored in the heap
+ */
+
+public class PairingHeap<E> extends AbstractQueue<E> {
+
+    /**
+     * Handle for an element in the heap
+     * @param <E>
+     */
+    public static final class Node<E> {
+
+        E element;
+
+        // leftmost child
+        Node<E> child;
+
+        // right sibling
+        Node<E> next;
+
+        // left sibling, or the parent for a leftmost child, null for the root
+        Node<E> prev;
+
+        // the heap the node was inserted into, forwarded when that heap is melded
+        Owner owner;
+
+        // returned by insert, so never recycled
+        boolean exposed;
+
+        Node() {
+        }
+
+        /**
+         * @return the element, null once it has been removed
+         */
+        public E element() {
+            return this.element;
+        }
+    }
+
+    /**
+     * Identity of a heap for its nodes. meld forwards the owner of the emptied
+     * heap to the receiving one so moved nodes need not be touched
+     */
+    private static final class Owner {
+
+        Owner forward;
+    }
+
+    // static variable
+    private static final int DEFAULT_MAX_POOL_SIZE = 1024;
+    // instance variables
+    private final Comparator<? super E> comparator;
+    private final int maxPoolSize;
+    private Owner owner = new Owner();
+    private Node<E> root;
+    private int size = 0;
+    // recycled nodes linked through next
+    private Node<E> pool;
+    private int poolSize = 0;
+    // modification count for the iterator
+    private int modCount = 0;
+
+    public PairingHeap() {
+        this(null, DEFAULT_MAX_POOL_SIZE);
+    }
+
+    public PairingHeap(Comparator<? super E> comparator) {
+        this(comparator, DEFAULT_MAX_POOL_SIZE);
+    }
+
+    /**
+     * @param comparator - the ordering or null for the natural ordering
+     * @param maxPoolSize - the most removed nodes kept for reuse, 0 disables pooling
+     */
+    public PairingHeap(Comparator<? super E> comparator, int maxPoolSize) {
+        if(maxPoolSize < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.comparator = comparator;
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        this.add(e, false);
+        return true;
+    }
+
+    /**
+     * Inserts the element
+     * @param e
+     * @return the handle for decreaseKey and remove
+     */
+    public Node<E> insert(E e) {
+        return this.add(e, true);
+    }
+
+    private Node<E> add(E e, boolean exposed) {
+        if(e==null) {
+            throw new NullPointerException();
+        }
+        Node<E> node = this.pool;
+        if(node!=null) {
+            this.pool = node.next;
+            node.next = null;
+            this.poolSize--;
+        } else {
+            node = new Node<E>();
+        }
+        node.element = e;
+        node.owner = this.owner;
+        node.exposed = exposed;
+        this.modCount++;
+        this.root = this.root==null ? node : this.link(this.root, node);
+        this.size++;
+        return node;
+    }
+
+    @Override
+    public E peek() {
+        return this.root==null ? null : this.root.element;
+    }
+
+    @Override
+    public E poll() {
+        Node<E> r = this.root;
+        if(r==null) {
+            return null;
+        }
+        E head = r.element;
+        this.modCount++;
+        this.root = this.combine(r.child);
+        this.size--;
+        this.recycle(r);
+        return head;
+    }
+
+    /**
+     * Replace the element of a node with a smaller or equal one
+     * @param node - a handle returned by insert
+     * @param e - the new element
+     * @throws IllegalArgumentException if the new element is larger
+     */
+    public void decreaseKey(Node<E> node, E e) {
+        if(e==null) {
+            throw new NullPointerException();
+        }
+        this.checkOwned(node);
+        if(this.compare(e, node.element) > 0) {
+            throw new IllegalArgumentException("new element is larger");
+        }
+        this.modCount++;
+        node.element = e;
+        if(node!=this.root) {
+            this.cut(node);
+            this.root = this.link(this.root, node);
+        }
+    }
+
+    /**
+     * Remove the element of a node
+     * @param node - a handle returned by insert
+     * @return the removed element
+     */
+    public E remove(Node<E> node) {
+        this.checkOwned(node);
+        E e = node.element;
+        if(node==this.root) {
+            return this.poll();
+        }
+        this.modCount++;
+        this.cut(node);
+        Node<E> children = this.combine(node.child);
+        if(children!=null) {
+            this.root = this.link(this.root, children);
+        }
+        this.size--;
+        this.recycle(node);
+        return e;
+    }
+
+    /**
+     * Move every element of other into this heap in O(1), other is left empty.
+     * Handles of other stay valid and now refer to this heap
+     * @param other - a heap with the same ordering
+     */
+    public void meld(PairingHeap<E> other) {
+        if(other==this) {
+            throw new IllegalArgumentException();
+        }
+        if(!Objects.equals(this.comparator, other.comparator)) {
+            throw new IllegalArgumentException("heaps are ordered differently");
+        }
+        if(other.root==null) {
+            return;
+        }
+        this.modCount++;
+        other.modCount++;
+        this.root = this.root==null ? other.root : this.link(this.root, other.root);
+        this.size += other.size;
+        /* the moved nodes now belong here, other starts over with a new identity */
+        other.owner.forward = this.owner;
+        other.owner = new Owner();
+        other.root = null;
+        other.size = 0;
+    }
+
+    /**
+     * @throws IllegalArgumentException unless the node holds an element of this heap
+     */
+    private void checkOwned(Node<E> node) {
+        if(node.element==null) {
+            throw new IllegalArgumentException("node is not in the heap");
+        }
+        Owner o = node.owner;
+        while(o.forward!=null) {
+            o = o.forward;
+        }
+        /* shorten the chain for the next lookup */
+        node.owner = o;
+        if(o!=this.owner) {
+            throw new IllegalArgumentException("node belongs to another heap");
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    public Comparator<? super E> comparator() {
+        return this.comparator;
+    }
+
+    /**
+     * Drop every element, the nodes are left to the garbage collector. Handles
+     * of the dropped elements are rejected afterwards
+     */
+    @Override
+    public void clear() {
+        this.modCount++;
+        this.root = null;
+        this.size = 0;
+        this.owner = new Owner();
+    }
+
+    /**
+     * Remove one instance of the element, found by a walk over the tree. The
+     * handle of the element, when there is one, removes it in O(log n)
+     * @param o - the object to remove
+     * @return true if an element was removed
+     */
+    @Override
+    public boolean remove(Object o) {
+        if(o==null || this.root==null) {
+            return false;
+        }
+        ArrayDeque<Node<E>> stack = new ArrayDeque<Node<E>>();
+        stack.push(this.root);
+        Node<E> node;
+        while((node = stack.poll())!=null) {
+            if(o.equals(node.element)) {
+                this.remove(node);
+                return true;
+            }
+            if(node.next!=null) {
+                stack.push(node.next);
+            }
+            if(node.child!=null) {
+                stack.push(node.child);
+            }
+        }
+        return false;
+    }
+
+    /* iterator provides no guarantees of the order of iteration */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    /**
+     * Make the larger of two roots the leftmost child of the smaller one
+     * @return the new root
+     */
+    private Node<E> link(Node<E> a, Node<E> b) {
+        Node<E> winner;
+        Node<E> loser;
+        if(this.compare(b.element, a.element) < 0) {
+            winner = b;
+            loser = a;
+        } else {
+            winner = a;
+            loser = b;
+        }
+        Node<E> first = winner.child;
+        loser.next = first;
+        if(first!=null) {
+            first.prev = loser;
+        }
+        loser.prev = winner;
+        winner.child = loser;
+        return winner;
+    }
+
+    /**
+     * Detach a node that is not the root, with its subtree, from its parent
+     */
+    private void cut(Node<E> node) {
+        Node<E> prev = node.prev;
+        if(prev.child==node) {
+            prev.child = node.next;
+        } else {
+            prev.next = node.next;
+        }
+        if(node.next!=null) {
+            node.next.prev = prev;
+        }
+        node.next = null;
+        node.prev = null;
+    }
+
+    /**
+     * Two pass pairing of a sibling list
+     * @param first - the leftmost sibling or null
+     * @return the root of the combined tree or null
+     */
+    private Node<E> combine(Node<E> first) {
+        if(first==null) {
+            return null;
+        }
+        /* first pass: link pairs left to right, the results are pushed on a stack through next */
+        Node<E> pairs = null;
+        Node<E> a = first;
+        while(a!=null) {
+            Node<E> b = a.next;
+            a.prev = null;
+            if(b==null) {
+                a.next = pairs;
+                pairs = a;
+                break;
+            }
+            Node<E> rest = b.next;
+            a.next = null;
+            b.next = null;
+            b.prev = null;
+            Node<E> winner = this.link(a, b);
+            winner.next = pairs;
+            pairs = winner;
+            a = rest;
+        }
+        /* second pass: meld right to left, the stack already holds the rightmost pair on top */
+        Node<E> result = pairs;
+        Node<E> r = pairs.next;
+        result.next = null;
+        while(r!=null) {
+            Node<E> nx = r.next;
+            r.next = null;
+            result = this.link(result, r);
+            r = nx;
+        }
+        result.prev = null;
+        return result;
+    }
+
+    /**
+     * Return a removed node to the pool
+     */
+    private void recycle(Node<E> node) {
+        node.element = null;
+        node.child = null;
+        node.prev = null;
+        node.owner = null;
+        if(!node.exposed && this.poolSize < this.maxPoolSize) {
+            node.next = this.pool;
+            this.pool = node;
+            this.poolSize++;
+        } else {
+            node.next = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        if(this.comparator!=null) {
+            return this.comparator.compare(a, b);
+        }
+        return ((Comparable<? super E>) a).compareTo(b);
+    }
+
+    private final class Itr implements Iterator<E> {
+
+        private final ArrayDeque<Node<E>> stack = new ArrayDeque<Node<E>>();
+
+        /* nodes below a removed node, returned without walking their links again */
+        private ArrayDeque<Node<E>> forgetMeNot = null;
+
+        private Node<E> lastRet = null;
+
+        /* true if lastRet came from the stack, so its subtree is still unvisited */
+        private boolean lastRetWalked = false;
+
+        private int expectedModCount = PairingHeap.this.modCount;
+
+        Itr() {
+            if(PairingHeap.this.root!=null) {
+                this.stack.push(PairingHeap.this.root);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !this.stack.isEmpty() || (this.forgetMeNot!=null && !this.forgetMeNot.isEmpty());
+        }
+
+        @Override
+        public E next() {
+            if(this.expectedModCount!=PairingHeap.this.modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if(this.forgetMeNot!=null && !this.forgetMeNot.isEmpty()) {
+                this.lastRet = this.forgetMeNot.poll();
+                this.lastRetWalked = false;
+                return this.lastRet.element;
+            }
+            Node<E> node = this.stack.poll();
+            if(node==null) {
+                throw new NoSuchElementException();
+            }
+            this.lastRet = node;
+            this.lastRetWalked = true;
+            if(node.next!=null) {
+                this.stack.push(node.next);
+            }
+            if(node.child!=null) {
+                this.stack.push(node.child);
+            }
+            return node.element;
+        }
+
+        /**
+         * Removing a node re-pairs its children, which would move unvisited nodes
+         * around the tree. The subtree of a node just taken from the stack is
+         * unvisited, so it is collected into forgetMeNot first and the walk never
+         * follows the re-paired links
+         */
+        @Override
+        public void remove() {
+            if(this.expectedModCount!=PairingHeap.this.modCount) {
+                throw new ConcurrentModificationException();
+            }
+            Node<E> node = this.lastRet;
+            if(node==null) {
+                throw new IllegalStateException();
+            }
+            this.lastRet = null;
+            if(this.lastRetWalked && node.child!=null) {
+                /* next pushed the child last */
+                this.stack.pop();
+                if(this.forgetMeNot==null) {
+                    this.forgetMeNot = new ArrayDeque<Node<E>>();
+                }
+                ArrayDeque<Node<E>> pending = new ArrayDeque<Node<E>>();
+                pending.push(node.child);
+                Node<E> n;
+                while((n = pending.poll())!=null) {
+                    this.forgetMeNot.add(n);
+                    if(n.next!=null) {
+                        pending.push(n.next);
+                    }
+                    if(n.child!=null) {
+                        pending.push(n.child);
+                    }
+                }
+            }
+            PairingHeap.this.remove(node);
+            this.expectedModCount = PairingHeap.this.modCount;
+        }
+    }
+
+}
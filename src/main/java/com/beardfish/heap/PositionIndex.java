@@ -0,0 +1,194 @@
+package com.beardfish.heap;
+
+import java.util.Arrays;
+
+/**
+ * Maps the elements of a heap to their positions so membership and removal do
+ * not need a linear scan. The table is open addressing with linear probing over
+ * primitive arrays: every entry holds the heap position and the spread hash of
+ * one element, the element itself is read from the heap array. A second array
+ * parallel to the heap holds the table entry of every position, so a sift moving
+ * an element only has to rewrite two ints and never rehashes it.
+ *
+ * Equal elements get an entry each, like the heap itself. Deletion shifts the
+ * following entries of the probe run back instead of leaving tombstones.
+ *
+ * @author Christian
+ */
+
+class PositionIndex {
+
+    // smallest table, a power of two
+    private static final int MIN_TABLE_SIZE = 16;
+    private static final int EMPTY = -1;
+    // instance variables
+    // heap position of every table entry or EMPTY
+    private int[] positions;
+    // spread hash of every table entry
+    private int[] hashes;
+    // table entry of every heap position
+    private int[] slots;
+    private int mask;
+    private int count = 0;
+
+    PositionIndex(int heapCapacity) {
+        this.slots = new int[heapCapacity];
+        this.allocate(tableSizeFor(heapCapacity));
+    }
+
+    private void allocate(int tableSize) {
+        this.positions = new int[tableSize];
+        this.hashes = new int[tableSize];
+        this.mask = tableSize - 1;
+        Arrays.fill(this.positions, EMPTY);
+    }
+
+    /**
+     * @return a power of two at least twice n
+     */
+    private static int tableSizeFor(int n) {
+        int size = MIN_TABLE_SIZE;
+        while(size < 2L * n && size < (1 << 30)) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private static int hash(Object o) {
+        int h = o.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Make room for heapCapacity positions
+     */
+    void ensureCapacity(int heapCapacity) {
+        if(heapCapacity > this.slots.length) {
+            this.slots = Arrays.copyOf(this.slots, heapCapacity);
+        }
+    }
+
+    /**
+     * Add an entry for a new element, its position is set with place once the
+     * element has settled
+     * @param o
+     * @return the table entry
+     */
+    int insert(Object o) {
+        if(2L * (this.count + 1) > this.positions.length) {
+            this.rehash(this.positions.length << 1);
+        }
+        int h = hash(o);
+        int t = h & this.mask;
+        while(this.positions[t]!=EMPTY) {
+            t = (t + 1) & this.mask;
+        }
+        this.hashes[t] = h;
+        /* reserved, place sets the real position */
+        this.positions[t] = Integer.MAX_VALUE;
+        this.count++;
+        return t;
+    }
+
+    /**
+     * Record that the element of table entry t now sits at position
+     */
+    void place(int t, int position) {
+        this.positions[t] = position;
+        this.slots[position] = t;
+    }
+
+    /**
+     * Record that the element at position from moved to position to
+     */
+    void move(int from, int to) {
+        int t = this.slots[from];
+        this.slots[to] = t;
+        this.positions[t] = to;
+    }
+
+    /**
+     * @return the table entry of the element at position
+     */
+    int slot(int position) {
+        return this.slots[position];
+    }
+
+    /**
+     * Remove the entry of the element at position
+     */
+    void remove(int position) {
+        int hole = this.slots[position];
+        int j = hole;
+        for(;;) {
+            j = (j + 1) & this.mask;
+            int p = this.positions[j];
+            if(p==EMPTY) {
+                break;
+            }
+            /* move the entry back if the hole lies on its probe path */
+            int ideal = this.hashes[j] & this.mask;
+            if(((j - ideal) & this.mask) >= ((j - hole) & this.mask)) {
+                this.positions[hole] = p;
+                this.hashes[hole] = this.hashes[j];
+                if(p!=Integer.MAX_VALUE) {
+                    this.slots[p] = hole;
+                }
+                hole = j;
+            }
+        }
+        this.positions[hole] = EMPTY;
+        this.count--;
+    }
+
+    /**
+     * @param o - the element to find
+     * @param queue - the heap array
+     * @param identity - match the same instance rather than an equal one
+     * @return the position of a matching element or -1
+     */
+    int find(Object o, Object[] queue, boolean identity) {
+        int h = hash(o);
+        int t = h & this.mask;
+        int p;
+        while((p = this.positions[t])!=EMPTY) {
+            if(this.hashes[t]==h && p!=Integer.MAX_VALUE) {
+                Object e = queue[p];
+                if(e==o || (!identity && o.equals(e))) {
+                    return p;
+                }
+            }
+            t = (t + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    void clear() {
+        Arrays.fill(this.positions, EMPTY);
+        this.count = 0;
+    }
+
+    /**
+     * Rebuild the table with a new size, only placed entries are expected
+     */
+    private void rehash(int tableSize) {
+        int[] oldPositions = this.positions;
+        int[] oldHashes = this.hashes;
+        this.allocate(tableSize);
+        for(int i = 0; i < oldPositions.length; i++) {
+            int p = oldPositions[i];
+            if(p==EMPTY) {
+                continue;
+            }
+            int h = oldHashes[i];
+            int t = h & this.mask;
+            while(this.positions[t]!=EMPTY) {
+                t = (t + 1) & this.mask;
+            }
+            this.positions[t] = p;
+            this.hashes[t] = h;
+            this.slots[p] = t;
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.beardfish.heap;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Monotone priority queue of long keys with a long payload (a radix heap). Keys
+ * are never compared with each other on insertion: a key goes into the bucket
+ * numbered by the highest bit in which it differs from the current minimum,
+ * bucket 0 holding keys equal to it. When bucket 0 runs empty the first non empty
+ * bucket is scanned for its minimum, which becomes the new current minimum, and
+ * its entries are redistributed into lower buckets. An entry only ever moves to
+ * a lower bucket, so each costs O(log C) over its lifetime where C is the spread
+ * of keys, independent of the number of entries.
+ *
+ * The heap is monotone: every key offered must be greater than or equal to the
+ * current minimum, the key last returned by peekKey or poll. This holds for
+ * Dijkstra style searches and event simulations. int keys can be offered as is.
+ *
+ * @author Christian
+ */
+
+public class RadixHeap {
+
+    // static variable
+    private static final int BUCKETS = 65;
+    private static final int DEFAULT_BUCKET_CAPACITY = 4;
+    // instance variables
+    private final long[][] keys = new long[BUCKETS][];
+    private final long[][] payloads = new long[BUCKETS][];
+    private final int[] sizes = new int[BUCKETS];
+    // the current minimum, every key in the heap is at least this
+    private long last;
+    private int size = 0;
+
+    public RadixHeap() {
+        this(Long.MIN_VALUE);
+    }
+
+    /**
+     * @param minimum - the smallest key that will ever be offered
+     */
+    public RadixHeap(long minimum) {
+        this.last = minimum;
+    }
+
+    /**
+     * Inserts a key with its payload
+     * @param key - at least the current minimum
+     * @param payload
+     * @return true
+     * @throws IllegalArgumentException if the key is below the current minimum
+     */
+    public boolean offer(long key, long payload) {
+        if(key < this.last) {
+            throw new IllegalArgumentException("key " + key + " is below the current minimum " + this.last);
+        }
+        this.push(bucket(key, this.last), key, payload);
+        this.size++;
+        return true;
+    }
+
+    /**
+     * @return the smallest key
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public long peekKey() {
+        this.settle();
+        return this.last;
+    }
+
+    /**
+     * @return the payload of an entry with the smallest key
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public long peekPayload() {
+        this.settle();
+        return this.payloads[0][this.sizes[0] - 1];
+    }
+
+    /**
+     * Removes an entry with the smallest key, read the key with peekKey first if
+     * it is needed
+     * @return its payload
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public long pollPayload() {
+        this.settle();
+        this.size--;
+        return this.payloads[0][--this.sizes[0]];
+    }
+
+    /**
+     * Removes an entry with the smallest key
+     * @return its key
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public long pollKey() {
+        this.settle();
+        this.size--;
+        this.sizes[0]--;
+        return this.last;
+    }
+
+    /**
+     * @return the current minimum, the lower bound for offered keys
+     */
+    public long lastKey() {
+        return this.last;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size==0;
+    }
+
+    /**
+     * Removes every entry, the current minimum is kept
+     */
+    public void clear() {
+        Arrays.fill(this.sizes, 0);
+        this.size = 0;
+    }
+
+    /**
+     * @return 0 if key equals last, otherwise one more than the index of the
+     *         highest bit in which they differ
+     */
+    private static int bucket(long key, long last) {
+        return 64 - Long.numberOfLeadingZeros(key ^ last);
+    }
+
+    private void push(int b, long key, long payload) {
+        long[] k = this.keys[b];
+        int n = this.sizes[b];
+        if(k==null) {
+            k = this.keys[b] = new long[DEFAULT_BUCKET_CAPACITY];
+            this.payloads[b] = new long[DEFAULT_BUCKET_CAPACITY];
+        } else if(n==k.length) {
+            k = this.keys[b] = Arrays.copyOf(k, n << 1);
+            this.payloads[b] = Arrays.copyOf(this.payloads[b], n << 1);
+        }
+        k[n] = key;
+        this.payloads[b][n] = payload;
+        this.sizes[b] = n + 1;
+    }
+
+    /**
+     * Make sure bucket 0 holds the entries with the smallest key
+     */
+    private void settle() {
+        if(this.sizes[0] > 0) {
+            return;
+        }
+        if(this.size==0) {
+            throw new NoSuchElementException();
+        }
+        int b = 1;
+        while(this.sizes[b]==0) {
+            b++;
+        }
+        long[] k = this.keys[b];
+        long[] p = this.payloads[b];
+        int n = this.sizes[b];
+        long min = k[0];
+        for(int i = 1; i < n; i++) {
+            if(k[i] < min) {
+                min = k[i];
+            }
+        }
+        this.last = min;
+        this.sizes[b] = 0;
+        /* every entry lands in a lower bucket, so b itself is never written here */
+        for(int i = 0; i < n; i++) {
+            this.push(bucket(k[i], min), k[i], p[i]);
+        }
+    }
+
+}
@@ -0,0 +1,238 @@
+package com.beardfish.heap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Array of fixed width records kept outside the Java heap. Every record starts
+ * with a long key followed by the payload bytes and is padded to a multiple of 8
+ * bytes so keys are always aligned. Records are spread over chunks of a power of
+ * two number of records so the buffer is not limited by the 2GB ByteBuffer limit.
+ * The first chunk starts at the requested capacity and doubles until it reaches
+ * the full chunk size, so small buffers do not pay for a whole chunk; only then
+ * are further full chunks added.
+ *
+ * Chunks are direct ByteBuffers by default, subclasses decide where the memory
+ * comes from by overriding allocateChunk and resizeChunk.
+ *
+ * @author Christian
+ */
+
+class RecordBuffer {
+
+    // largest chunk in bytes
+    private static final int MAX_CHUNK_BYTES = 1 << 30;
+    // most records per chunk
+    private static final int MAX_CHUNK_SHIFT = 20;
+    // instance variables
+    final int payloadWidth;
+    final int stride;
+    final int chunkShift;
+    final int chunkMask;
+    final ByteOrder order;
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+    private long capacity = 0;
+
+    RecordBuffer(int payloadWidth) {
+        this(payloadWidth, MAX_CHUNK_SHIFT);
+    }
+
+    /**
+     * @param payloadWidth - bytes of payload after every key
+     * @param maxChunkShift - log2 of the most records per chunk
+     */
+    RecordBuffer(int payloadWidth, int maxChunkShift) {
+        this(payloadWidth, maxChunkShift, ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @param payloadWidth - bytes of payload after every key
+     * @param maxChunkShift - log2 of the most records per chunk
+     * @param order - the byte order of keys and payload longs in the chunks
+     */
+    RecordBuffer(int payloadWidth, int maxChunkShift, ByteOrder order) {
+        if(payloadWidth < 0 || maxChunkShift < 0 || maxChunkShift > MAX_CHUNK_SHIFT) {
+            throw new IllegalArgumentException();
+        }
+        this.payloadWidth = payloadWidth;
+        this.stride = (8 + payloadWidth + 7) & ~7;
+        if(this.stride > MAX_CHUNK_BYTES) {
+            throw new IllegalArgumentException("payload too wide");
+        }
+        int shift = maxChunkShift;
+        while(((long) this.stride << shift) > MAX_CHUNK_BYTES) {
+            shift--;
+        }
+        this.chunkShift = shift;
+        this.chunkMask = (1 << shift) - 1;
+        this.order = order;
+    }
+
+    /**
+     * Allocate the memory for a chunk
+     * @param index - the chunk number
+     * @param bytes - the size of the chunk
+     * @return a buffer of at least bytes bytes
+     */
+    ByteBuffer allocateChunk(int index, int bytes) {
+        return ByteBuffer.allocateDirect(bytes);
+    }
+
+    /**
+     * Replace the first chunk with a larger one holding the same records
+     * @param chunk - the current first chunk
+     * @param used - the bytes of chunk in use
+     * @param bytes - the size of the new chunk
+     * @return a buffer of at least bytes bytes starting with the contents of chunk
+     */
+    ByteBuffer resizeChunk(ByteBuffer chunk, int used, int bytes) {
+        ByteBuffer larger = this.allocateChunk(0, bytes);
+        ByteBuffer src = chunk.duplicate();
+        src.clear().limit(used);
+        larger.put(src);
+        larger.clear();
+        return larger;
+    }
+
+    /**
+     * @return the number of records that fit without allocating
+     */
+    long capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Make sure at least minCapacity records fit, allocating whole chunks
+     * @param minCapacity
+     */
+    void ensureCapacity(long minCapacity) {
+        long full = 1L << this.chunkShift;
+        if(this.capacity < minCapacity && this.capacity < full) {
+            /* grow the only chunk geometrically, up to the full chunk size */
+            long records = Math.min(Math.max(minCapacity, this.capacity * 2), full);
+            int bytes = (int) records * this.stride;
+            ByteBuffer chunk = this.chunks.length==0 ?
+                    this.allocateChunk(0, bytes) :
+                    this.resizeChunk(this.chunks[0], (int) this.capacity * this.stride, bytes);
+            chunk.order(this.order);
+            this.chunks = new ByteBuffer[] {chunk};
+            this.capacity = records;
+        }
+        while(this.capacity < minCapacity) {
+            int index = this.chunks.length;
+            ByteBuffer chunk = this.allocateChunk(index, this.stride << this.chunkShift);
+            chunk.order(this.order);
+            this.chunks = Arrays.copyOf(this.chunks, index + 1);
+            this.chunks[index] = chunk;
+            this.capacity += 1L << this.chunkShift;
+        }
+    }
+
+    /**
+     * Drop every chunk, the memory is returned once the buffers are collected
+     */
+    void release() {
+        this.chunks = new ByteBuffer[0];
+        this.capacity = 0;
+    }
+
+    ByteBuffer chunk(int index) {
+        return this.chunks[index];
+    }
+
+    int chunkCount() {
+        return this.chunks.length;
+    }
+
+    long key(int record) {
+        return this.chunks[record >>> this.chunkShift].getLong((record & this.chunkMask) * this.stride);
+    }
+
+    void putKey(int record, long key) {
+        this.chunks[record >>> this.chunkShift].putLong((record & this.chunkMask) * this.stride, key);
+    }
+
+    /**
+     * Read 8 bytes of payload at the given payload offset
+     */
+    long payloadLong(int record, int offset) {
+        return this.chunks[record >>> this.chunkShift].getLong((record & this.chunkMask) * this.stride + 8 + offset);
+    }
+
+    void putPayloadLong(int record, int offset, long value) {
+        this.chunks[record >>> this.chunkShift].putLong((record & this.chunkMask) * this.stride + 8 + offset, value);
+    }
+
+    void getPayload(int record, byte[] dst) {
+        ByteBuffer chunk = this.chunks[record >>> this.chunkShift];
+        int base = (record & this.chunkMask) * this.stride + 8;
+        int n = Math.min(dst.length, this.payloadWidth);
+        for(int i = 0; i < n; i++) {
+            dst[i] = chunk.get(base + i);
+        }
+    }
+
+    void putPayload(int record, byte[] src) {
+        ByteBuffer chunk = this.chunks[record >>> this.chunkShift];
+        int base = (record & this.chunkMask) * this.stride + 8;
+        for(int i = 0; i < src.length; i++) {
+            chunk.put(base + i, src[i]);
+        }
+        for(int i = src.length; i < this.payloadWidth; i++) {
+            chunk.put(base + i, (byte) 0);
+        }
+    }
+
+    /**
+     * Copy a whole record, key and payload
+     * @param from
+     * @param to
+     */
+    void copy(int from, int to) {
+        ByteBuffer src = this.chunks[from >>> this.chunkShift];
+        ByteBuffer dst = this.chunks[to >>> this.chunkShift];
+        int s = (from & this.chunkMask) * this.stride;
+        int d = (to & this.chunkMask) * this.stride;
+        for(int i = 0; i < this.stride; i += 8) {
+            dst.putLong(d + i, src.getLong(s + i));
+        }
+    }
+
+    /**
+     * Copy a whole record into a buffer of at least stride bytes
+     */
+    void save(int record, ByteBuffer scratch) {
+        this.save(record, scratch, 0);
+    }
+
+    /**
+     * Copy a record saved with save back into the buffer
+     */
+    void restore(ByteBuffer scratch, int record) {
+        this.restore(scratch, 0, record);
+    }
+
+    /**
+     * Copy a record saved at offset in scratch back into the buffer
+     */
+    void restore(ByteBuffer scratch, int offset, int record) {
+        ByteBuffer dst = this.chunks[record >>> this.chunkShift];
+        int d = (record & this.chunkMask) * this.stride;
+        for(int i = 0; i < this.stride; i += 8) {
+            dst.putLong(d + i, scratch.getLong(offset + i));
+        }
+    }
+
+    /**
+     * Copy a whole record into scratch at the given offset
+     */
+    void save(int record, ByteBuffer scratch, int offset) {
+        ByteBuffer src = this.chunks[record >>> this.chunkShift];
+        int s = (record & this.chunkMask) * this.stride;
+        for(int i = 0; i < this.stride; i += 8) {
+            scratch.putLong(offset + i, src.getLong(s + i));
+        }
+    }
+
+}
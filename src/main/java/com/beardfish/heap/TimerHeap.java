@@ -0,0 +1,238 @@
+package com.beardfish.heap;
+
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Predicate;
+
+/**
+ * Timer queue built on a {@link MinHeap} ordered by deadline. schedule returns a
+ * {@link Timeout} handle and cancelling it only marks the entry, O(1) instead of
+ * the linear search behind MinHeap.remove(Object). Cancelled entries stay in the
+ * heap as tombstones and are dropped when they reach the head. Once tombstones
+ * make up more than a given share of the heap it is compacted with a single
+ * filtering pass and an O(n) rebuild, so dead entries never dominate the heap and
+ * the cost of a tick stays proportional to the timeouts that actually expire.
+ *
+ * Deadlines are plain longs in whatever unit the caller uses (System.nanoTime or
+ * a tick counter). Timeouts with the same deadline expire in schedule order.
+ *
+ * schedule, pollExpired and nextDeadline must be called by a single owner (the
+ * timer thread). Timeout.cancel may be called from any thread.
+ *
+ * @author Christian
+ *
+ * @param <T>
+ *            - the task carried by a timeout
+ */
+
+public class TimerHeap<T> {
+
+    /**
+     * Handle for a scheduled task
+     * @param <T>
+     */
+    public static final class Timeout<T> {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        /* the class literal is raw, the updater is typed once here */
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        private static final AtomicIntegerFieldUpdater<Timeout<?>> STATE =
+                (AtomicIntegerFieldUpdater) AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimerHeap<T> timer;
+        private final long deadline;
+        private final long sequence;
+        private final T task;
+        private volatile int state = PENDING;
+
+        Timeout(TimerHeap<T> timer, long deadline, long sequence, T task) {
+            this.timer = timer;
+            this.deadline = deadline;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        /**
+         * Cancel the timeout, the entry is removed from the heap lazily
+         * @return true if the timeout was pending; false if it already expired or was cancelled
+         */
+        public boolean cancel() {
+            if(!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                return false;
+            }
+            this.timer.tombstones.incrementAndGet();
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return this.state==CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return this.state==EXPIRED;
+        }
+
+        public long deadline() {
+            return this.deadline;
+        }
+
+        public T task() {
+            return this.task;
+        }
+
+        /* claim the timeout for expiry, fails if it was cancelled first */
+        boolean expire() {
+            return STATE.compareAndSet(this, PENDING, EXPIRED);
+        }
+
+        @Override
+        public String toString() {
+            return "Timeout[deadline=" + this.deadline + ", task=" + this.task + "]";
+        }
+    }
+
+    // static variable
+    private static final int DEFAULT_INITIAL_CAPACITY = 12;
+    /* compact once at least half of the heap is cancelled */
+    public static final double DEFAULT_TOMBSTONE_RATIO = 0.5;
+    // heaps smaller than this are never compacted, the tombstones drain quickly anyway
+    private static final int MIN_COMPACTION_SIZE = 64;
+    private static final Comparator<Timeout<?>> BY_DEADLINE = new Comparator<Timeout<?>>() {
+        @Override
+        public int compare(Timeout<?> a, Timeout<?> b) {
+            int c = Long.compare(a.deadline, b.deadline);
+            return c!=0 ? c : Long.compare(a.sequence, b.sequence);
+        }
+    };
+    private static final Predicate<Timeout<?>> CANCELLED = new Predicate<Timeout<?>>() {
+        @Override
+        public boolean test(Timeout<?> t) {
+            return t.isCancelled();
+        }
+    };
+    // instance variables
+    private final MinHeap<Timeout<T>> heap;
+    private final double tombstoneRatio;
+    // cancelled entries still in the heap
+    private final AtomicInteger tombstones = new AtomicInteger();
+    private long sequence = 0;
+
+    public TimerHeap() {
+        this(MinHeap.QUATERNARY, DEFAULT_TOMBSTONE_RATIO);
+    }
+
+    /**
+     * @param arity - the number of children per node of the underlying heap
+     * @param tombstoneRatio - the share of cancelled entries, between 0 and 1,
+     *                       above which the heap is compacted
+     */
+    public TimerHeap(int arity, double tombstoneRatio) {
+        if(!(tombstoneRatio > 0 && tombstoneRatio <= 1)) {
+            throw new IllegalArgumentException();
+        }
+        this.tombstoneRatio = tombstoneRatio;
+        this.heap = new MinHeap<Timeout<T>>(DEFAULT_INITIAL_CAPACITY, BY_DEADLINE, arity);
+    }
+
+    /**
+     * Schedule a task
+     * @param deadline - when the task expires
+     * @param task
+     * @return the handle used to cancel the task
+     */
+    public Timeout<T> schedule(long deadline, T task) {
+        if(task==null) {
+            throw new NullPointerException();
+        }
+        Timeout<T> timeout = new Timeout<T>(this, deadline, this.sequence++, task);
+        this.heap.offer(timeout);
+        this.compactIfNeeded();
+        return timeout;
+    }
+
+    /**
+     * Remove the earliest task whose deadline is at or before now
+     * @param now - the current time
+     * @return the task or null if nothing has expired
+     */
+    public T pollExpired(long now) {
+        Timeout<T> head;
+        while((head = this.heap.peek())!=null && head.deadline <= now) {
+            this.heap.poll();
+            if(head.expire()) {
+                return head.task;
+            }
+            /* a tombstone, it leaves the heap here */
+            this.tombstones.decrementAndGet();
+        }
+        this.compactIfNeeded();
+        return null;
+    }
+
+    /**
+     * @return the deadline of the earliest pending task or Long.MAX_VALUE if none
+     */
+    public long nextDeadline() {
+        Timeout<T> head;
+        while((head = this.heap.peek())!=null && head.isCancelled()) {
+            this.heap.poll();
+            this.tombstones.decrementAndGet();
+        }
+        return head==null ? Long.MAX_VALUE : head.deadline;
+    }
+
+    /**
+     * @return the number of pending tasks
+     */
+    public int size() {
+        return Math.max(this.heap.size() - this.tombstones.get(), 0);
+    }
+
+    public boolean isEmpty() {
+        return this.size()==0;
+    }
+
+    /**
+     * @return the number of cancelled entries not yet dropped from the heap
+     */
+    public int tombstones() {
+        return Math.max(this.tombstones.get(), 0);
+    }
+
+    /**
+     * Drop every cancelled entry now, O(n)
+     */
+    public void purge() {
+        int before = this.heap.size();
+        this.heap.removeIf(CANCELLED);
+        this.tombstones.addAndGet(this.heap.size() - before);
+    }
+
+    /**
+     * Cancel every pending task and empty the heap. An entry cancelled through
+     * its handle is counted by that cancel, possibly after the state change a
+     * concurrent clear already saw, so clear subtracts those entries instead of
+     * resetting the counter
+     */
+    public void clear() {
+        int cancelled = 0;
+        for(Timeout<T> timeout : this.heap) {
+            if(!Timeout.STATE.compareAndSet(timeout, Timeout.PENDING, Timeout.CANCELLED)) {
+                cancelled++;
+            }
+        }
+        this.heap.clear();
+        this.tombstones.addAndGet(-cancelled);
+    }
+
+    private void compactIfNeeded() {
+        int n = this.heap.size();
+        if(n >= MIN_COMPACTION_SIZE && this.tombstones.get() > n * this.tombstoneRatio) {
+            this.purge();
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.beardfish.heap.graph;
+
+import java.util.Arrays;
+
+/**
+ * Directed graph with non negative integer edge weights in compressed sparse row
+ * form. The edges of vertex v are the indexes firstEdge(v) up to endEdge(v) of
+ * the target and weight arrays, so walking the neighbours of a vertex reads two
+ * contiguous int arrays and allocates nothing. An undirected graph stores every
+ * edge in both directions.
+ *
+ * Vertices may carry planar coordinates in the same unit as the weights, which
+ * is what {@link Heuristic#euclidean(CsrGraph, int)} uses for A*.
+ *
+ * @author Christian
+ */
+
+public class CsrGraph {
+
+    // instance variables
+    private final int vertexCount;
+    // edges of vertex v are offsets[v] until offsets[v+1]
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] weights;
+    private final double[] xs;
+    private final double[] ys;
+
+    /**
+     * @param vertexCount - vertices are numbered from 0 to vertexCount-1
+     * @param sources - the source of every edge
+     * @param targets - the target of every edge
+     * @param weights - the weight of every edge, at least 0
+     */
+    public CsrGraph(int vertexCount, int[] sources, int[] targets, int[] weights) {
+        this(vertexCount, sources, targets, weights, null, null);
+    }
+
+    /**
+     * @param vertexCount - vertices are numbered from 0 to vertexCount-1
+     * @param sources - the source of every edge
+     * @param targets - the target of every edge
+     * @param weights - the weight of every edge, at least 0
+     * @param xs - the x coordinate of every vertex or null
+     * @param ys - the y coordinate of every vertex or null
+     */
+    public CsrGraph(int vertexCount, int[] sources, int[] targets, int[] weights, double[] xs, double[] ys) {
+        if(vertexCount < 0 || sources.length!=targets.length || sources.length!=weights.length) {
+            throw new IllegalArgumentException();
+        }
+        if((xs==null)!=(ys==null) || (xs!=null && (xs.length!=vertexCount || ys.length!=vertexCount))) {
+            throw new IllegalArgumentException("coordinates do not match the vertices");
+        }
+        int m = sources.length;
+        this.vertexCount = vertexCount;
+        this.offsets = new int[vertexCount + 1];
+        for(int e = 0; e < m; e++) {
+            if(sources[e] < 0 || sources[e] >= vertexCount || targets[e] < 0 || targets[e] >= vertexCount) {
+                throw new IllegalArgumentException("edge " + e + " has a vertex out of range");
+            }
+            if(weights[e] < 0) {
+                throw new IllegalArgumentException("edge " + e + " has a negative weight");
+            }
+            this.offsets[sources[e] + 1]++;
+        }
+        for(int v = 0; v < vertexCount; v++) {
+            this.offsets[v + 1] += this.offsets[v];
+        }
+        /* counting sort of the edges by source */
+        this.targets = new int[m];
+        this.weights = new int[m];
+        int[] next = Arrays.copyOf(this.offsets, vertexCount);
+        for(int e = 0; e < m; e++) {
+            int slot = next[sources[e]]++;
+            this.targets[slot] = targets[e];
+            this.weights[slot] = weights[e];
+        }
+        this.xs = xs;
+        this.ys = ys;
+    }
+
+    public int vertexCount() {
+        return this.vertexCount;
+    }
+
+    public int edgeCount() {
+        return this.targets.length;
+    }
+
+    /**
+     * @return the index of the first edge of vertex v
+     */
+    public int firstEdge(int v) {
+        return this.offsets[v];
+    }
+
+    /**
+     * @return one past the index of the last edge of vertex v
+     */
+    public int endEdge(int v) {
+        return this.offsets[v + 1];
+    }
+
+    public int degree(int v) {
+        return this.offsets[v + 1] - this.offsets[v];
+    }
+
+    public int target(int edge) {
+        return this.targets[edge];
+    }
+
+    public int weight(int edge) {
+        return this.weights[edge];
+    }
+
+    public boolean hasCoordinates() {
+        return this.xs!=null;
+    }
+
+    public double x(int v) {
+        return this.xs[v];
+    }
+
+    public double y(int v) {
+        return this.ys[v];
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.beardfish.heap.graph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Synthetic undirected graphs for exercising the searches: road like grids,
+ * planar with small bounded degrees and weights tied to geometry, and power law
+ * graphs with a few hubs of very high degree. Both are deterministic for a seed.
+ *
+ * @author Christian
+ */
+
+public final class GraphGenerator {
+
+    // distance between neighbouring grid points in weight units
+    private static final int GRID_SPACING = 100;
+
+    private GraphGenerator() {
+    }
+
+    /**
+     * Jittered width x height grid where every vertex is joined to its right and
+     * lower neighbours (a few links are missing) and now and then diagonally.
+     * Edge weights are the length of the edge stretched by up to half again, so
+     * they are never below the straight line distance and
+     * {@link Heuristic#euclidean(CsrGraph, int)} is consistent
+     * @param width
+     * @param height
+     * @param seed
+     * @return the graph with coordinates
+     */
+    public static CsrGraph roadNetwork(int width, int height, long seed) {
+        if(width < 1 || height < 1 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException();
+        }
+        Random random = new Random(seed);
+        int n = width * height;
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for(int v = 0; v < n; v++) {
+            xs[v] = (v % width) * GRID_SPACING + (random.nextDouble() - 0.5) * GRID_SPACING * 0.6;
+            ys[v] = (v / width) * GRID_SPACING + (random.nextDouble() - 0.5) * GRID_SPACING * 0.6;
+        }
+        EdgeList edges = new EdgeList(4 * n);
+        for(int v = 0; v < n; v++) {
+            int col = v % width;
+            int row = v / width;
+            if(col + 1 < width && random.nextInt(20)!=0) {
+                roadEdge(edges, xs, ys, v, v + 1, random);
+            }
+            if(row + 1 < height && random.nextInt(20)!=0) {
+                roadEdge(edges, xs, ys, v, v + width, random);
+            }
+            if(col + 1 < width && row + 1 < height && random.nextInt(10)==0) {
+                roadEdge(edges, xs, ys, v, v + width + 1, random);
+            }
+        }
+        return edges.toGraph(n, xs, ys);
+    }
+
+    /**
+     * Preferential attachment (Barabasi-Albert): every new vertex links to
+     * edgesPerVertex earlier vertices picked with probability proportional to
+     * their degree, giving a power law degree distribution
+     * @param vertexCount
+     * @param edgesPerVertex
+     * @param maxWeight - weights are drawn uniformly from 1 to maxWeight
+     * @param seed
+     * @return the graph
+     */
+    public static CsrGraph powerLaw(int vertexCount, int edgesPerVertex, int maxWeight, long seed) {
+        if(edgesPerVertex < 1 || vertexCount <= edgesPerVertex || maxWeight < 1) {
+            throw new IllegalArgumentException();
+        }
+        Random random = new Random(seed);
+        long endpointCount = 2L * vertexCount * edgesPerVertex;
+        if(endpointCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("too many edges");
+        }
+        /* every vertex appears once per incident edge so a uniform pick is degree biased */
+        int[] endpoints = new int[(int) endpointCount];
+        int endpointSize = 0;
+        EdgeList edges = new EdgeList(2 * vertexCount * edgesPerVertex);
+        for(int v = edgesPerVertex; v < vertexCount; v++) {
+            for(int j = 0; j < edgesPerVertex; j++) {
+                int u = v==edgesPerVertex ? j : endpoints[random.nextInt(endpointSize)];
+                int w = 1 + random.nextInt(maxWeight);
+                edges.add(u, v, w);
+                edges.add(v, u, w);
+                endpoints[endpointSize++] = u;
+                endpoints[endpointSize++] = v;
+            }
+        }
+        return edges.toGraph(vertexCount, null, null);
+    }
+
+    private static void roadEdge(EdgeList edges, double[] xs, double[] ys, int u, int v, Random random) {
+        double dx = xs[u] - xs[v];
+        double dy = ys[u] - ys[v];
+        int w = (int) Math.ceil(Math.sqrt(dx * dx + dy * dy) * (1 + random.nextDouble() * 0.5));
+        edges.add(u, v, w);
+        edges.add(v, u, w);
+    }
+
+    /**
+     * Growable edge arrays
+     */
+    private static final class EdgeList {
+
+        int[] sources;
+
+        int[] targets;
+
+        int[] weights;
+
+        int size = 0;
+
+        EdgeList(int initialCapacity) {
+            int capacity = Math.max(initialCapacity, 16);
+            this.sources = new int[capacity];
+            this.targets = new int[capacity];
+            this.weights = new int[capacity];
+        }
+
+        void add(int source, int target, int weight) {
+            if(this.size==this.sources.length) {
+                int capacity = this.size + (this.size >> 1);
+                this.sources = Arrays.copyOf(this.sources, capacity);
+                this.targets = Arrays.copyOf(this.targets, capacity);
+                this.weights = Arrays.copyOf(this.weights, capacity);
+            }
+            this.sources[this.size] = source;
+            this.targets[this.size] = target;
+            this.weights[this.size] = weight;
+            this.size++;
+        }
+
+        CsrGraph toGraph(int vertexCount, double[] xs, double[] ys) {
+            return new CsrGraph(vertexCount, Arrays.copyOf(this.sources, this.size),
+                    Arrays.copyOf(this.targets, this.size), Arrays.copyOf(this.weights, this.size), xs, ys);
+        }
+    }
+
+}
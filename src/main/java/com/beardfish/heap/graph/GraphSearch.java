@@ -0,0 +1,123 @@
+package com.beardfish.heap.graph;
+
+import java.util.Arrays;
+
+/**
+ * Priority queue driven graph algorithms over a {@link CsrGraph}: Dijkstra's
+ * shortest paths, A* and Prim's minimum spanning forest. Each runs with any
+ * {@link QueueStrategy} so decreaseKey queues can be compared with lazy
+ * insertion on the same graph.
+ *
+ * @author Christian
+ */
+
+public final class GraphSearch {
+
+    private GraphSearch() {
+    }
+
+    /**
+     * Shortest paths from source to every vertex
+     * @param graph
+     * @param source
+     * @param strategy
+     * @return the shortest path tree
+     */
+    public static SearchTree dijkstra(CsrGraph graph, int source, QueueStrategy strategy) {
+        return search(graph, source, -1, null, strategy);
+    }
+
+    /**
+     * Shortest path from source to target, stops once the target is settled
+     * @param graph
+     * @param source
+     * @param target
+     * @param heuristic - a consistent lower bound on the distance to target
+     * @param strategy
+     * @return the search tree, exact for target and every settled vertex
+     */
+    public static SearchTree aStar(CsrGraph graph, int source, int target, Heuristic heuristic, QueueStrategy strategy) {
+        if(target < 0 || target >= graph.vertexCount()) {
+            throw new IllegalArgumentException("target out of range");
+        }
+        return search(graph, source, target, heuristic, strategy);
+    }
+
+    /**
+     * Minimum spanning forest of an undirected graph (every edge stored in both directions)
+     * @param graph
+     * @param strategy
+     * @return the forest, the key of every vertex is the weight of the edge to its parent
+     */
+    public static SearchTree prim(CsrGraph graph, QueueStrategy strategy) {
+        int n = graph.vertexCount();
+        long[] keys = new long[n];
+        int[] parents = new int[n];
+        boolean[] settled = new boolean[n];
+        Arrays.fill(keys, Long.MAX_VALUE);
+        Arrays.fill(parents, -1);
+        VertexQueue queue = strategy.create(n);
+        int count = 0;
+        for(int root = 0; root < n; root++) {
+            if(settled[root]) {
+                continue;
+            }
+            keys[root] = 0;
+            queue.push(root, 0);
+            int u;
+            while((u = queue.poll())!=-1) {
+                settled[u] = true;
+                count++;
+                for(int e = graph.firstEdge(u), end = graph.endEdge(u); e < end; e++) {
+                    int v = graph.target(e);
+                    int w = graph.weight(e);
+                    if(!settled[v] && w < keys[v]) {
+                        keys[v] = w;
+                        parents[v] = u;
+                        queue.push(v, w);
+                    }
+                }
+            }
+        }
+        return new SearchTree(keys, parents, count);
+    }
+
+    private static SearchTree search(CsrGraph graph, int source, int target, Heuristic heuristic, QueueStrategy strategy) {
+        int n = graph.vertexCount();
+        if(source < 0 || source >= n) {
+            throw new IllegalArgumentException("source out of range");
+        }
+        long[] distances = new long[n];
+        int[] parents = new int[n];
+        boolean[] settled = new boolean[n];
+        Arrays.fill(distances, Long.MAX_VALUE);
+        Arrays.fill(parents, -1);
+        VertexQueue queue = strategy.create(n);
+        distances[source] = 0;
+        queue.push(source, heuristic==null ? 0 : heuristic.estimate(source));
+        int count = 0;
+        int u;
+        while((u = queue.poll())!=-1) {
+            settled[u] = true;
+            count++;
+            if(u==target) {
+                break;
+            }
+            long du = distances[u];
+            for(int e = graph.firstEdge(u), end = graph.endEdge(u); e < end; e++) {
+                int v = graph.target(e);
+                if(settled[v]) {
+                    continue;
+                }
+                long dv = du + graph.weight(e);
+                if(dv < distances[v]) {
+                    distances[v] = dv;
+                    parents[v] = u;
+                    queue.push(v, heuristic==null ? dv : dv + heuristic.estimate(v));
+                }
+            }
+        }
+        return new SearchTree(distances, parents, count);
+    }
+
+}
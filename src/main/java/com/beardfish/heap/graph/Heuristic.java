@@ -0,0 +1,42 @@
+package com.beardfish.heap.graph;
+
+/**
+ * Lower bound on the remaining distance to the target of an A* search. It must
+ * be consistent: for every edge (u, v) estimate(u) <= weight(u, v) + estimate(v),
+ * and 0 at the target.
+ *
+ * @author Christian
+ */
+
+public interface Heuristic {
+
+    /**
+     * @param vertex
+     * @return a lower bound on the distance from vertex to the target
+     */
+    long estimate(int vertex);
+
+    /**
+     * Straight line distance, consistent when no edge is shorter than the
+     * distance between its end points (as in {@link GraphGenerator#roadNetwork})
+     * @param graph - a graph with coordinates
+     * @param target
+     * @return the heuristic
+     */
+    static Heuristic euclidean(final CsrGraph graph, final int target) {
+        if(!graph.hasCoordinates()) {
+            throw new IllegalArgumentException("graph has no coordinates");
+        }
+        final double tx = graph.x(target);
+        final double ty = graph.y(target);
+        return new Heuristic() {
+            @Override
+            public long estimate(int vertex) {
+                double dx = graph.x(vertex) - tx;
+                double dy = graph.y(vertex) - ty;
+                return (long) Math.sqrt(dx * dx + dy * dy);
+            }
+        };
+    }
+
+}
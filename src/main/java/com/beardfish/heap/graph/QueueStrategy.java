@@ -0,0 +1,47 @@
+package com.beardfish.heap.graph;
+
+/**
+ * How a {@link GraphSearch} keeps its frontier
+ *
+ * @author Christian
+ */
+
+public enum QueueStrategy {
+
+    /**
+     * One entry per vertex in a MinPriorityQueue, improved keys are applied with
+     * decreaseKey through its element to position map
+     */
+    EAGER {
+        @Override
+        VertexQueue create(int vertexCount) {
+            return new VertexQueue.Eager(vertexCount);
+        }
+    },
+
+    /**
+     * One entry per vertex in an IndexedMinPriorityQueue, decreaseKey by vertex id
+     * without hashing
+     */
+    INDEXED {
+        @Override
+        VertexQueue create(int vertexCount) {
+            return new VertexQueue.Indexed(vertexCount);
+        }
+    },
+
+    /**
+     * Every improved key is offered to a MinHeap as a new entry and outdated
+     * entries are skipped when polled. No decreaseKey, but the heap holds up to
+     * one entry per relaxed edge
+     */
+    LAZY {
+        @Override
+        VertexQueue create(int vertexCount) {
+            return new VertexQueue.Lazy(vertexCount);
+        }
+    };
+
+    abstract VertexQueue create(int vertexCount);
+
+}
@@ -0,0 +1,88 @@
+package com.beardfish.heap.graph;
+
+import java.util.Arrays;
+
+/**
+ * Result of a {@link GraphSearch}: the parent of every reached vertex and its
+ * key. For Dijkstra and A* the key is the distance from the source, for Prim it
+ * is the weight of the edge joining the vertex to its parent. Unreached vertices
+ * have the key Long.MAX_VALUE and the parent -1, as do roots.
+ *
+ * @author Christian
+ */
+
+public class SearchTree {
+
+    // instance variables
+    private final long[] keys;
+    private final int[] parents;
+    private final int settled;
+
+    SearchTree(long[] keys, int[] parents, int settled) {
+        this.keys = keys;
+        this.parents = parents;
+        this.settled = settled;
+    }
+
+    /**
+     * @return the key of v, the distance from the source for a shortest path
+     *         search. Exact for every vertex settled before the search stopped
+     */
+    public long distance(int v) {
+        return this.keys[v];
+    }
+
+    public boolean isReached(int v) {
+        return this.keys[v]!=Long.MAX_VALUE;
+    }
+
+    public int parent(int v) {
+        return this.parents[v];
+    }
+
+    /**
+     * @return the number of vertices removed from the queue
+     */
+    public int settledCount() {
+        return this.settled;
+    }
+
+    /**
+     * @return the sum of the keys of all reached vertices, the weight of the
+     *         spanning forest for Prim
+     */
+    public long totalWeight() {
+        long total = 0;
+        for(long key : this.keys) {
+            if(key!=Long.MAX_VALUE) {
+                total += key;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @param target
+     * @return the vertices from the root to target or an empty array if target was not reached
+     */
+    public int[] path(int target) {
+        if(!this.isReached(target)) {
+            return new int[0];
+        }
+        int length = 1;
+        for(int v = target; this.parents[v]!=-1; v = this.parents[v]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for(int v = target; length > 0; v = this.parents[v]) {
+            path[--length] = v;
+        }
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchTree[settled=" + this.settled + ", keys=" + Arrays.toString(this.keys) + "]";
+    }
+
+}
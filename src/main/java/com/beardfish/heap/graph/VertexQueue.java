@@ -0,0 +1,145 @@
+package com.beardfish.heap.graph;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.beardfish.heap.IndexedMinPriorityQueue;
+import com.beardfish.heap.MinHeap;
+import com.beardfish.heap.MinPriorityQueue;
+
+/**
+ * Priority queue of vertices keyed by a long, the one operation graph searches
+ * need beyond poll being "insert or lower the key". Each subclass maps it onto a
+ * different queue of this library, see {@link QueueStrategy}.
+ *
+ * @author Christian
+ */
+
+abstract class VertexQueue {
+
+    /**
+     * Insert the vertex or lower its key, the key is never raised
+     */
+    abstract void push(int vertex, long key);
+
+    /**
+     * @return the vertex with the smallest key or -1 if the queue is empty
+     */
+    abstract int poll();
+
+    /**
+     * A vertex and its key as a heap element
+     */
+    static final class Label {
+
+        final int vertex;
+
+        long key;
+
+        Label(int vertex, long key) {
+            this.vertex = vertex;
+            this.key = key;
+        }
+    }
+
+    static final Comparator<Label> BY_KEY = new Comparator<Label>() {
+        @Override
+        public int compare(Label a, Label b) {
+            return Long.compare(a.key, b.key);
+        }
+    };
+
+    /**
+     * One label per vertex in a {@link MinPriorityQueue}, lowered in place with decreaseKey
+     */
+    static final class Eager extends VertexQueue {
+
+        private final MinPriorityQueue<Label> queue = new MinPriorityQueue<Label>(12, BY_KEY);
+
+        private final Label[] labels;
+
+        Eager(int vertexCount) {
+            this.labels = new Label[vertexCount];
+        }
+
+        @Override
+        void push(int vertex, long key) {
+            Label label = this.labels[vertex];
+            if(label==null) {
+                this.queue.offer(this.labels[vertex] = new Label(vertex, key));
+                return;
+            }
+            label.key = key;
+            if(!this.queue.decreaseKey(label)) {
+                this.queue.offer(label);
+            }
+        }
+
+        @Override
+        int poll() {
+            Label label = this.queue.poll();
+            return label==null ? -1 : label.vertex;
+        }
+    }
+
+    /**
+     * Vertex ids in an {@link IndexedMinPriorityQueue}, no hashing
+     */
+    static final class Indexed extends VertexQueue {
+
+        private final IndexedMinPriorityQueue<Long> queue;
+
+        Indexed(int vertexCount) {
+            this.queue = new IndexedMinPriorityQueue<Long>(Math.max(vertexCount, 1));
+        }
+
+        @Override
+        void push(int vertex, long key) {
+            if(this.queue.contains(vertex)) {
+                this.queue.decreaseKey(vertex, key);
+            } else {
+                this.queue.offer(vertex, key);
+            }
+        }
+
+        @Override
+        int poll() {
+            return this.queue.isEmpty() ? -1 : this.queue.pollId();
+        }
+    }
+
+    /**
+     * A new label in a {@link MinHeap} for every push, outdated labels are skipped by poll
+     */
+    static final class Lazy extends VertexQueue {
+
+        private final MinHeap<Label> heap = new MinHeap<Label>(12, BY_KEY);
+
+        // the key of the live label of every vertex
+        private final long[] best;
+
+        Lazy(int vertexCount) {
+            this.best = new long[vertexCount];
+            Arrays.fill(this.best, Long.MAX_VALUE);
+        }
+
+        @Override
+        void push(int vertex, long key) {
+            this.best[vertex] = key;
+            this.heap.offer(new Label(vertex, key));
+        }
+
+        @Override
+        int poll() {
+            Label label;
+            while((label = this.heap.poll())!=null) {
+                if(label.key==this.best[label.vertex]) {
+                    this.best[label.vertex] = Long.MAX_VALUE;
+                    return label.vertex;
+                }
+            }
+            return -1;
+        }
+    }
+
+}
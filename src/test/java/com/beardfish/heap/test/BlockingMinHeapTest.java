@@ -0,0 +1,79 @@
+package com.beardfish.heap.test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.beardfish.heap.BlockingMinHeap;
+
+public class BlockingMinHeapTest {
+
+	@Test
+	public void testBoundedOffer() {
+		BlockingMinHeap<Integer> queue = new BlockingMinHeap<Integer>(3);
+		Assert.assertTrue(queue.offer(5));
+		Assert.assertTrue(queue.offer(1));
+		Assert.assertTrue(queue.offer(3));
+		Assert.assertFalse(queue.offer(0));
+		Assert.assertEquals(0, queue.remainingCapacity());
+		Assert.assertEquals(Integer.valueOf(1), queue.poll());
+		Assert.assertTrue(queue.offer(0));
+		List<Integer> drained = new ArrayList<Integer>();
+		Assert.assertEquals(2, queue.drainTo(drained, 2));
+		Assert.assertEquals(Integer.valueOf(0), drained.get(0));
+		Assert.assertEquals(Integer.valueOf(3), drained.get(1));
+	}
+
+	@Test
+	public void testIteratorRemovesByIdentity() {
+		BlockingMinHeap<String> queue = new BlockingMinHeap<String>(4);
+		String first = new String("equal");
+		String second = new String("equal");
+		queue.offer(first);
+		queue.offer(second);
+		for(Iterator<String> it = queue.iterator(); it.hasNext();) {
+			if(it.next()==second) {
+				it.remove();
+			}
+		}
+		Assert.assertEquals(1, queue.size());
+		Assert.assertEquals(3, queue.remainingCapacity());
+		Assert.assertSame(first, queue.poll());
+	}
+
+	@Test(timeout = 10000)
+	public void testProducersAndConsumers() throws Exception {
+		final BlockingMinHeap<Integer> queue = new BlockingMinHeap<Integer>(4);
+		final int perProducer = 1000;
+		Thread[] producers = new Thread[4];
+		for(int p = 0; p < producers.length; p++) {
+			final int offset = p * perProducer;
+			producers[p] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						for(int i = 0; i < perProducer; i++) {
+							queue.put(offset + i);
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			producers[p].start();
+		}
+		long sum = 0;
+		for(int i = 0; i < producers.length * perProducer; i++) {
+			sum += queue.take();
+		}
+		for(Thread producer : producers) {
+			producer.join();
+		}
+		long n = producers.length * perProducer;
+		Assert.assertEquals(n * (n - 1) / 2, sum);
+		Assert.assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+	}
+}
@@ -0,0 +1,193 @@
+package com.beardfish.heap.test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.beardfish.heap.ExternalMinPriorityQueue;
+
+public class ExternalMinPriorityQueueTest {
+
+	/* writes ints, failing on purpose once the number of writes or reads left drops to zero */
+	private static final class IntSerializer implements ExternalMinPriorityQueue.Serializer<Integer> {
+
+		int writesLeft = Integer.MAX_VALUE;
+
+		int readsLeft = Integer.MAX_VALUE;
+
+		@Override
+		public void write(DataOutput out, Integer element) throws IOException {
+			if(this.writesLeft--<=0) {
+				throw new IOException("disk full");
+			}
+			out.writeInt(element);
+		}
+
+		@Override
+		public Integer read(DataInput in) throws IOException {
+			if(this.readsLeft--<=0) {
+				throw new IOException("bad sector");
+			}
+			return in.readInt();
+		}
+
+		@Override
+		public long sizeOf(Integer element) {
+			return 16;
+		}
+	}
+
+	private File directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		this.directory = Files.createTempDirectory("minheap-test").toFile();
+		this.directory.deleteOnExit();
+	}
+
+	@Test
+	public void testSpillAndMerge() {
+		Random random = new Random(11);
+		/* 100 elements per run and at most 4 runs open */
+		ExternalMinPriorityQueue<Integer> queue = new ExternalMinPriorityQueue<Integer>(new IntSerializer(), 1600, this.directory, null, 4);
+		List<Integer> expected = new ArrayList<Integer>();
+		for(int i = 0; i < 5000; i++) {
+			int next = random.nextInt(100000);
+			queue.offer(next);
+			expected.add(next);
+			Assert.assertTrue(queue.runCount() < 4);
+			Assert.assertTrue(this.directory.list().length < 4);
+		}
+		Assert.assertEquals(5000, queue.longSize());
+		Assert.assertTrue(queue.runCount() > 0);
+		Collections.sort(expected);
+		for(int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.get(i), queue.peek());
+			Assert.assertEquals(expected.get(i), queue.poll());
+			if(i % 1000 == 0) {
+				/* offers interleaved with polls, always above everything polled so far */
+				queue.offer(expected.get(expected.size() - 1));
+				expected.add(expected.get(expected.size() - 1));
+			}
+		}
+		Assert.assertNull(queue.poll());
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertEquals(0, this.directory.list().length);
+		queue.close();
+	}
+
+	@Test
+	public void testCloseDeletesRuns() {
+		ExternalMinPriorityQueue<Integer> queue = new ExternalMinPriorityQueue<Integer>(new IntSerializer(), 160, this.directory);
+		for(int i = 0; i < 100; i++) {
+			queue.offer(i);
+		}
+		Assert.assertTrue(this.directory.list().length > 0);
+		queue.close();
+		Assert.assertEquals(0, this.directory.list().length);
+		Assert.assertEquals(0, queue.longSize());
+		Assert.assertNull(queue.poll());
+	}
+
+	@Test
+	public void testFailedSpillKeepsElements() {
+		IntSerializer serializer = new IntSerializer();
+		ExternalMinPriorityQueue<Integer> queue = new ExternalMinPriorityQueue<Integer>(serializer, 160, this.directory);
+		for(int i = 20; i < 30; i++) {
+			queue.offer(i);
+		}
+		serializer.writesLeft = 5;
+		try {
+			queue.offer(0);
+			Assert.fail();
+		} catch (UncheckedIOException e) {
+			/* the run file is deleted and the buffer kept */
+		}
+		Assert.assertEquals(11, queue.longSize());
+		Assert.assertEquals(0, queue.runCount());
+		Assert.assertEquals(0, this.directory.list().length);
+		serializer.writesLeft = Integer.MAX_VALUE;
+		queue.offer(30);
+		Assert.assertEquals(1, queue.runCount());
+		Assert.assertEquals(Integer.valueOf(0), queue.poll());
+		for(int i = 20; i <= 30; i++) {
+			Assert.assertEquals(Integer.valueOf(i), queue.poll());
+		}
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testFailedMergeKeepsRuns() {
+		IntSerializer serializer = new IntSerializer();
+		ExternalMinPriorityQueue<Integer> queue = new ExternalMinPriorityQueue<Integer>(serializer, 160, this.directory, null, 2);
+		/* eleven elements spill a run, the second run triggers a merge */
+		for(int i = 0; i < 11; i++) {
+			queue.offer(2 * i);
+		}
+		Assert.assertEquals(1, queue.runCount());
+		for(int i = 11; i < 21; i++) {
+			queue.offer(2 * i);
+		}
+		/* the spill needs 11 writes, the merge fails halfway without failing the offer */
+		serializer.writesLeft = 11 + 10;
+		Assert.assertTrue(queue.offer(1));
+		serializer.writesLeft = Integer.MAX_VALUE;
+		/* the merged file is deleted, the runs are kept */
+		Assert.assertEquals(2, queue.runCount());
+		Assert.assertEquals(2, this.directory.list().length);
+		Assert.assertEquals(22, queue.longSize());
+		List<Integer> polled = new ArrayList<Integer>();
+		Integer next;
+		while((next = queue.poll())!=null) {
+			polled.add(next);
+		}
+		List<Integer> expected = new ArrayList<Integer>();
+		expected.add(1);
+		for(int i = 0; i < 21; i++) {
+			expected.add(2 * i);
+		}
+		Collections.sort(expected);
+		Assert.assertEquals(expected, polled);
+	}
+
+	@Test
+	public void testFailedReadKeepsElements() {
+		IntSerializer serializer = new IntSerializer();
+		ExternalMinPriorityQueue<Integer> queue = new ExternalMinPriorityQueue<Integer>(serializer, 160, this.directory);
+		/* one run of 0..10 on disk, 11 stays in memory */
+		for(int i = 0; i < 12; i++) {
+			queue.offer(i);
+		}
+		Assert.assertEquals(1, queue.runCount());
+		Assert.assertEquals(Integer.valueOf(0), queue.poll());
+		Assert.assertEquals(Integer.valueOf(1), queue.poll());
+		serializer.readsLeft = 0;
+		for(int attempt = 0; attempt < 2; attempt++) {
+			try {
+				queue.poll();
+				Assert.fail();
+			} catch (UncheckedIOException e) {
+				/* the head stays */
+			}
+			Assert.assertEquals(10, queue.longSize());
+			Assert.assertEquals(Integer.valueOf(2), queue.peek());
+		}
+		serializer.readsLeft = Integer.MAX_VALUE;
+		for(int i = 2; i < 12; i++) {
+			Assert.assertEquals(Integer.valueOf(i), queue.poll());
+		}
+		Assert.assertNull(queue.poll());
+		Assert.assertEquals(0, this.directory.list().length);
+	}
+}
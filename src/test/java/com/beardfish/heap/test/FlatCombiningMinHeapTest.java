@@ -0,0 +1,96 @@
+package com.beardfish.heap.test;
+
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.beardfish.heap.FlatCombiningMinHeap;
+
+public class FlatCombiningMinHeapTest {
+
+	@Test
+	public void testPollOrder() {
+		FlatCombiningMinHeap<Integer> heap = new FlatCombiningMinHeap<Integer>();
+		int [] numbers = {25,19,36,17,3,100,1,2,7};
+		for(int i = 0; i < numbers.length; i++) {
+			heap.offer(numbers[i]);
+		}
+		int [] expected = {1,2,3,7,17,19,25,36,100};
+		for(int i = 0; i < expected.length; i++) {
+			Assert.assertEquals(Integer.valueOf(expected[i]), heap.poll());
+		}
+		Assert.assertNull(heap.poll());
+	}
+
+	@Test(timeout = 60000)
+	public void testConcurrentOfferPoll() throws InterruptedException {
+		final FlatCombiningMinHeap<Integer> heap = new FlatCombiningMinHeap<Integer>();
+		final int workers = 4;
+		final int perWorker = 50000;
+		final int sleepers = 2;
+		final ConcurrentLinkedQueue<Integer> polled = new ConcurrentLinkedQueue<Integer>();
+		final CountDownLatch workersDone = new CountDownLatch(workers);
+		Thread [] threads = new Thread[workers + sleepers];
+		for(int t = 0; t < workers; t++) {
+			final int base = t * perWorker;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for(int i = 0; i < perWorker; i++) {
+						heap.offer(base + i);
+						if(i % 2 == 1) {
+							Integer e = heap.poll();
+							if(e!=null) {
+								polled.add(e);
+							}
+						}
+					}
+					workersDone.countDown();
+				}
+			};
+		}
+		for(int t = 0; t < sleepers; t++) {
+			final int base = workers * perWorker + t * 100;
+			/* goes idle long enough to be unlinked, then has to relink its slot */
+			threads[workers + t] = new Thread() {
+				@Override
+				public void run() {
+					heap.offer(base);
+					try {
+						workersDone.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for(int i = 1; i < 100; i++) {
+						heap.offer(base + i);
+						Integer e = heap.poll();
+						if(e!=null) {
+							polled.add(e);
+						}
+					}
+				}
+			};
+		}
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		Integer e;
+		while((e = heap.poll())!=null) {
+			polled.add(e);
+		}
+		int total = workers * perWorker + sleepers * 100;
+		Assert.assertEquals(total, polled.size());
+		BitSet seen = new BitSet(total);
+		for(Integer p : polled) {
+			Assert.assertFalse("polled twice: " + p, seen.get(p));
+			seen.set(p);
+		}
+		Assert.assertEquals(total, seen.cardinality());
+	}
+}
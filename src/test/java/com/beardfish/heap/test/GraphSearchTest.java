@@ -0,0 +1,116 @@
+package com.beardfish.heap.test;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.beardfish.heap.graph.CsrGraph;
+import com.beardfish.heap.graph.GraphGenerator;
+import com.beardfish.heap.graph.GraphSearch;
+import com.beardfish.heap.graph.Heuristic;
+import com.beardfish.heap.graph.QueueStrategy;
+import com.beardfish.heap.graph.SearchTree;
+
+public class GraphSearchTest {
+
+	@Test
+	public void testDijkstraMatchesBellmanFord() {
+		CsrGraph graph = GraphGenerator.powerLaw(300, 3, 50, 18);
+		long [] expected = bellmanFord(graph, 7);
+		for(QueueStrategy strategy : QueueStrategy.values()) {
+			SearchTree tree = GraphSearch.dijkstra(graph, 7, strategy);
+			for(int v = 0; v < graph.vertexCount(); v++) {
+				Assert.assertEquals(strategy + " vertex " + v, expected[v], tree.distance(v));
+			}
+			int [] path = tree.path(42);
+			Assert.assertEquals(7, path[0]);
+			Assert.assertEquals(42, path[path.length - 1]);
+		}
+	}
+
+	@Test
+	public void testAStarOnRoadNetwork() {
+		CsrGraph graph = GraphGenerator.roadNetwork(60, 40, 18);
+		int source = 0;
+		int target = graph.vertexCount() - 1;
+		SearchTree reference = GraphSearch.dijkstra(graph, source, QueueStrategy.INDEXED);
+		for(QueueStrategy strategy : QueueStrategy.values()) {
+			SearchTree tree = GraphSearch.aStar(graph, source, target, Heuristic.euclidean(graph, target), strategy);
+			Assert.assertEquals(reference.distance(target), tree.distance(target));
+			Assert.assertTrue(tree.settledCount() <= reference.settledCount());
+		}
+	}
+
+	@Test
+	public void testPrimMatchesKruskal() {
+		CsrGraph graph = GraphGenerator.roadNetwork(30, 30, 19);
+		long expected = kruskal(graph);
+		for(QueueStrategy strategy : QueueStrategy.values()) {
+			Assert.assertEquals(expected, GraphSearch.prim(graph, strategy).totalWeight());
+		}
+	}
+
+	private static long [] bellmanFord(CsrGraph graph, int source) {
+		long [] distances = new long[graph.vertexCount()];
+		Arrays.fill(distances, Long.MAX_VALUE);
+		distances[source] = 0;
+		boolean changed = true;
+		while(changed) {
+			changed = false;
+			for(int u = 0; u < graph.vertexCount(); u++) {
+				if(distances[u]==Long.MAX_VALUE) {
+					continue;
+				}
+				for(int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+					long d = distances[u] + graph.weight(e);
+					if(d < distances[graph.target(e)]) {
+						distances[graph.target(e)] = d;
+						changed = true;
+					}
+				}
+			}
+		}
+		return distances;
+	}
+
+	private static long kruskal(CsrGraph graph) {
+		int m = graph.edgeCount();
+		long [] edges = new long[m];
+		int k = 0;
+		for(int u = 0; u < graph.vertexCount(); u++) {
+			for(int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+				edges[k++] = ((long) graph.weight(e) << 32) | e;
+			}
+		}
+		Arrays.sort(edges);
+		int [] sourceOf = new int[m];
+		for(int u = 0; u < graph.vertexCount(); u++) {
+			for(int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+				sourceOf[e] = u;
+			}
+		}
+		int [] components = new int[graph.vertexCount()];
+		for(int v = 0; v < components.length; v++) {
+			components[v] = v;
+		}
+		long total = 0;
+		for(long packed : edges) {
+			int e = (int) packed;
+			int a = find(components, sourceOf[e]);
+			int b = find(components, graph.target(e));
+			if(a!=b) {
+				components[a] = b;
+				total += graph.weight(e);
+			}
+		}
+		return total;
+	}
+
+	private static int find(int [] components, int v) {
+		while(components[v]!=v) {
+			v = components[v] = components[components[v]];
+		}
+		return v;
+	}
+}
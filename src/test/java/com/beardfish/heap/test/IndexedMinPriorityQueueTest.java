@@ -0,0 +1,77 @@
+package com.beardfish.heap.test;
+
+import java.util.NoSuchElementException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.beardfish.heap.IndexedMinPriorityQueue;
+import com.beardfish.heap.MinPriorityQueue;
+
+public class IndexedMinPriorityQueueTest {
+
+	@Test
+	public void testPollOrder() {
+		IndexedMinPriorityQueue<Integer> queue = new IndexedMinPriorityQueue<Integer>(9);
+		int [] numbers = {100,19,36,17,3,25,1,2,7};
+		for(int i = 0; i <numbers.length; i++) {
+			queue.offer(i, numbers[i]);
+		}
+		int [] expectedIds = {6,7,4,8,3,1,5,2,0};
+		for(int i = 0; i <expectedIds.length; i++) {
+			Assert.assertEquals(expectedIds[i], queue.pollId());
+		}
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testChangeKeys() {
+		IndexedMinPriorityQueue<Integer> queue = new IndexedMinPriorityQueue<Integer>(9);
+		int [] numbers = {100,19,36,17,3,25,1,2,7};
+		for(int i = 0; i <numbers.length; i++) {
+			queue.offer(i, numbers[i]);
+		}
+		queue.decreaseKey(0, 0);
+		Assert.assertEquals(0, queue.peekId());
+		queue.increaseKey(0, 50);
+		Assert.assertEquals(6, queue.peekId());
+		queue.changePriority(2, -1);
+		Assert.assertEquals(Integer.valueOf(-1), queue.keyOf(2));
+		Assert.assertTrue(queue.remove(6));
+		Assert.assertFalse(queue.remove(6));
+		Assert.assertFalse(queue.contains(6));
+		int [] expectedIds = {2,7,4,8,3,1,5,0};
+		for(int i = 0; i <expectedIds.length; i++) {
+			Assert.assertEquals(expectedIds[i], queue.pollId());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecreaseKeyRejectsLargerKey() {
+		IndexedMinPriorityQueue<Integer> queue = new IndexedMinPriorityQueue<Integer>(2);
+		queue.offer(0, 5);
+		queue.decreaseKey(0, 6);
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testDecreaseKeyOfMissingId() {
+		IndexedMinPriorityQueue<Integer> queue = new IndexedMinPriorityQueue<Integer>(2);
+		queue.decreaseKey(1, 6);
+	}
+
+	@Test
+	public void testMinPriorityQueueDecreaseKey() {
+		MinPriorityQueue<int[]> queue = new MinPriorityQueue<int[]>(4, (a, b) -> Integer.compare(a[0], b[0]));
+		int[] last = null;
+		for(int i = 2; i <= 10; i+=2) {
+			last = new int[] {i * 10};
+			queue.offer(last);
+		}
+		int[] first = queue.peek();
+		queue.poll();
+		Assert.assertFalse(queue.decreaseKey(first));
+		last[0] = 0;
+		Assert.assertTrue(queue.decreaseKey(last));
+		Assert.assertSame(last, queue.peek());
+	}
+}
@@ -0,0 +1,112 @@
+package com.beardfish.heap.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.beardfish.heap.MappedMinHeap;
+import com.beardfish.heap.MinHeap;
+
+public class MappedMinHeapTest {
+
+	@Test
+	public void testReopen() throws Exception {
+		File file = File.createTempFile("minheap", ".heap");
+		file.deleteOnExit();
+		file.delete();
+		Random random = new Random(3);
+		long [] keys = new long[100000];
+		MappedMinHeap minHeap = new MappedMinHeap(file, 8, MinHeap.QUATERNARY, false);
+		for(int i = 0; i < keys.length; i++) {
+			keys[i] = random.nextInt();
+			minHeap.offer(keys[i], i);
+		}
+		minHeap.close();
+		Arrays.sort(keys);
+		minHeap = new MappedMinHeap(file, false);
+		Assert.assertEquals(keys.length, minHeap.size());
+		Assert.assertEquals(MinHeap.QUATERNARY, minHeap.arity());
+		for(int i = 0; i < keys.length / 2; i++) {
+			Assert.assertEquals(keys[i], minHeap.peekKey());
+			minHeap.pollPayload();
+		}
+		minHeap.close();
+		/* every synced poll forces the header and a chunk, a few hundred are enough */
+		int synced = keys.length / 2 + 300;
+		minHeap = new MappedMinHeap(file, true);
+		for(int i = keys.length / 2; i < synced; i++) {
+			Assert.assertEquals(keys[i], minHeap.poll(null));
+		}
+		minHeap.close();
+		minHeap = new MappedMinHeap(file, false);
+		for(int i = synced; i < keys.length; i++) {
+			Assert.assertEquals(keys[i], minHeap.poll(null));
+		}
+		Assert.assertTrue(minHeap.isEmpty());
+		minHeap.close();
+		file.delete();
+	}
+
+	@Test
+	public void testLittleEndianFile() throws Exception {
+		File file = File.createTempFile("minheap", ".heap");
+		file.deleteOnExit();
+		file.delete();
+		MappedMinHeap minHeap = new MappedMinHeap(file, 8, MinHeap.BINARY, false);
+		minHeap.offer(1, 2);
+		minHeap.close();
+		byte [] header = new byte[64];
+		RandomAccessFile raw = new RandomAccessFile(file, "r");
+		try {
+			raw.readFully(header);
+		} finally {
+			raw.close();
+		}
+		ByteBuffer fixed = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+		Assert.assertEquals(MappedMinHeap.VERSION, fixed.getInt(4));
+		Assert.assertEquals(MinHeap.BINARY, fixed.getInt(8));
+		Assert.assertEquals(1, fixed.getInt(24));
+		/* any other version is refused */
+		raw = new RandomAccessFile(file, "rw");
+		try {
+			raw.seek(4);
+			raw.write(new byte[] {2, 0, 0, 0});
+		} finally {
+			raw.close();
+		}
+		try {
+			new MappedMinHeap(file, false);
+			Assert.fail();
+		} catch (IOException e) {
+			/* unsupported version */
+		}
+		file.delete();
+	}
+
+	@Test
+	public void testFileIsLocked() throws Exception {
+		File file = File.createTempFile("minheap", ".heap");
+		file.deleteOnExit();
+		file.delete();
+		MappedMinHeap minHeap = new MappedMinHeap(file, 8, MinHeap.BINARY, false);
+		minHeap.offer(1, 2);
+		try {
+			new MappedMinHeap(file, false);
+			Assert.fail();
+		} catch (IOException e) {
+			/* locked by the first heap */
+		}
+		minHeap.close();
+		minHeap = new MappedMinHeap(file, false);
+		Assert.assertEquals(1, minHeap.size());
+		minHeap.close();
+		file.delete();
+	}
+}
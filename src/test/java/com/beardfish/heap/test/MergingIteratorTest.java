@@ -0,0 +1,87 @@
+package com.beardfish.heap.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.beardfish.heap.LongCursor;
+import com.beardfish.heap.LongMergingCursor;
+import com.beardfish.heap.MergingIterator;
+
+public class MergingIteratorTest {
+
+	@Test
+	public void testMergeIterators() {
+		Random random = new Random(13);
+		for(int k = 0; k <= 9; k++) {
+			List<Iterator<Integer>> sources = new ArrayList<Iterator<Integer>>();
+			List<Integer> expected = new ArrayList<Integer>();
+			for(int i = 0; i < k; i++) {
+				List<Integer> run = new ArrayList<Integer>();
+				int n = random.nextInt(50);
+				for(int j = 0; j < n; j++) {
+					run.add(random.nextInt(100));
+				}
+				Collections.sort(run);
+				expected.addAll(run);
+				sources.add(run.iterator());
+			}
+			Collections.sort(expected);
+			List<Integer> merged = new ArrayList<Integer>();
+			MergingIterator<Integer> it = new MergingIterator<Integer>(sources);
+			while(it.hasNext()) {
+				merged.add(it.next());
+			}
+			Assert.assertEquals(expected, merged);
+		}
+	}
+
+	@Test
+	public void testMergeIsStable() {
+		List<Iterator<String>> sources = new ArrayList<Iterator<String>>();
+		sources.add(Arrays.asList("a1", "b1").iterator());
+		sources.add(Arrays.asList("a2", "b2").iterator());
+		sources.add(Arrays.asList("a3").iterator());
+		MergingIterator<String> it = new MergingIterator<String>(sources, (x, y) -> x.charAt(0) - y.charAt(0));
+		StringBuilder sb = new StringBuilder();
+		while(it.hasNext()) {
+			sb.append(it.next());
+		}
+		Assert.assertEquals("a1a2a3b1b2", sb.toString());
+	}
+
+	@Test
+	public void testMergeLongCursors() {
+		LongCursor merged = new LongMergingCursor(cursor(1, 4, 9), cursor(), cursor(2, 3, 10, 11),
+				new LongMergingCursor(cursor(0, 5), cursor(4)));
+		long [] expected = {0, 1, 2, 3, 4, 4, 5, 9, 10, 11};
+		for(long e : expected) {
+			Assert.assertTrue(merged.advance());
+			Assert.assertEquals(e, merged.value());
+		}
+		Assert.assertFalse(merged.advance());
+		Assert.assertFalse(new LongMergingCursor().advance());
+	}
+
+	private static LongCursor cursor(final long... values) {
+		return new LongCursor() {
+			int index = -1;
+
+			@Override
+			public boolean advance() {
+				return ++this.index < values.length;
+			}
+
+			@Override
+			public long value() {
+				return values[this.index];
+			}
+		};
+	}
+}
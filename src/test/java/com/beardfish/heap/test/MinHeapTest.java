@@ -1,9 +1,25 @@
 package com.beardfish.heap.test;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.beardfish.heap.BoundedMinHeap;
+import com.beardfish.heap.HeapStats;
 import com.beardfish.heap.MinHeap;
+import com.beardfish.heap.MinPriorityQueue;
 
 public class MinHeapTest {
 
@@ -27,4 +43,302 @@ public class MinHeapTest {
 			minHeap.offer(numbers[i]);
 		}
 	}
+
+	@Test
+	public void testMinHeapFromCollection() {
+		List<Integer> numbers = Arrays.asList(100,19,36,17,3,25,1,2,7);
+		MinHeap<Integer> minHeap = new MinHeap<Integer>(numbers);
+		int [] expected = {1,2,3,7,17,19,25,36,100};
+		for(int i = 0; i <expected.length; i++) {
+			Assert.assertEquals(Integer.valueOf(expected[i]), minHeap.poll());
+		}
+		Assert.assertNull(minHeap.poll());
+	}
+
+	@Test
+	public void testMinHeapAddAll() {
+		Random random = new Random(42);
+		MinHeap<Integer> minHeap = new MinHeap<Integer>();
+		minHeap.offer(500);
+		List<Integer> batch = new ArrayList<Integer>();
+		for(int i = 0; i < 1000; i++) {
+			batch.add(random.nextInt(1000));
+		}
+		minHeap.addAll(batch);
+		minHeap.addAll(Arrays.asList(-1,2000));
+		Assert.assertEquals(1003, minHeap.size());
+		int previous = Integer.MIN_VALUE;
+		while(!minHeap.isEmpty()) {
+			int next = minHeap.poll();
+			Assert.assertTrue(previous <= next);
+			previous = next;
+		}
+		Assert.assertEquals(2000, previous);
+	}
+
+	@Test
+	public void testDaryHeaps() {
+		int [] arities = {MinHeap.BINARY, MinHeap.QUATERNARY, MinHeap.OCTONARY, 64};
+		for(int arity : arities) {
+			Random random = new Random(arity);
+			MinHeap<Integer> minHeap = new MinHeap<Integer>(1, null, arity);
+			MinPriorityQueue<Integer> queue = new MinPriorityQueue<Integer>(1, null, arity);
+			for(int i = 0; i < 2000; i++) {
+				int next = random.nextInt(500);
+				minHeap.offer(next);
+				queue.offer(next);
+			}
+			for(int i = 0; i < 100; i++) {
+				minHeap.remove(Integer.valueOf(i));
+				queue.remove(Integer.valueOf(i));
+			}
+			Assert.assertEquals(arity, minHeap.arity());
+			Assert.assertEquals(arity, new MinHeap<Integer>(minHeap).arity());
+			int previous = Integer.MIN_VALUE;
+			while(!minHeap.isEmpty()) {
+				int next = minHeap.poll();
+				Assert.assertTrue(previous <= next);
+				Assert.assertEquals(Integer.valueOf(next), queue.poll());
+				previous = next;
+			}
+			Assert.assertTrue(queue.isEmpty());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidArity() {
+		new MinHeap<Integer>(1, null, 3);
+	}
+
+	@Test
+	public void testMinHeapIteratorRemove() {
+		Random random = new Random(7);
+		MinHeap<Integer> minHeap = new MinHeap<Integer>(1, Collections.reverseOrder(), MinHeap.QUATERNARY);
+		List<Integer> odds = new ArrayList<Integer>();
+		for(int i = 0; i < 500; i++) {
+			int next = random.nextInt(10000);
+			minHeap.offer(next);
+			if(next % 2 == 1) {
+				odds.add(next);
+			}
+		}
+		int seen = 0;
+		for(Iterator<Integer> it = minHeap.iterator(); it.hasNext();) {
+			seen++;
+			if(it.next() % 2 == 0) {
+				it.remove();
+			}
+		}
+		Assert.assertEquals(500, seen);
+		Collections.sort(odds, Collections.reverseOrder());
+		for(Integer odd : odds) {
+			Assert.assertEquals(odd, minHeap.poll());
+		}
+		Assert.assertTrue(minHeap.isEmpty());
+	}
+
+	@Test
+	public void testBoundedMinHeapTopK() {
+		Random random = new Random(5);
+		BoundedMinHeap<Integer> topK = new BoundedMinHeap<Integer>(10);
+		List<Integer> all = new ArrayList<Integer>();
+		for(int i = 0; i < 10000; i++) {
+			int next = random.nextInt();
+			all.add(next);
+			topK.offerIfBetter(next);
+		}
+		Assert.assertEquals(10, topK.size());
+		Assert.assertFalse(topK.offer(Integer.MAX_VALUE));
+		Collections.sort(all);
+		for(int i = all.size() - 10; i < all.size(); i++) {
+			Assert.assertEquals(all.get(i), topK.poll());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testBoundedMinHeapAddWhenFull() {
+		BoundedMinHeap<Integer> topK = new BoundedMinHeap<Integer>(2);
+		topK.addAll(Arrays.asList(1,2,3));
+	}
+
+	@Test
+	public void testIndexedMinHeap() {
+		Random random = new Random(15);
+		MinHeap<Integer> minHeap = new MinHeap<Integer>(1, null, MinHeap.QUATERNARY, true);
+		List<Integer> expected = new ArrayList<Integer>();
+		for(int i = 0; i < 3000; i++) {
+			/* duplicates on purpose */
+			int next = random.nextInt(1000);
+			minHeap.offer(next);
+			expected.add(next);
+		}
+		List<Integer> batch = new ArrayList<Integer>();
+		for(int i = 0; i < 5000; i++) {
+			batch.add(1000 + random.nextInt(1000));
+		}
+		minHeap.addAll(batch);
+		expected.addAll(batch);
+		for(int i = 0; i < 2000; i++) {
+			Integer victim = random.nextInt(2000);
+			Assert.assertEquals(expected.contains(victim), minHeap.contains(victim));
+			Assert.assertEquals(expected.remove(victim), minHeap.remove(victim));
+		}
+		minHeap.removeIf(x -> x % 7 == 0);
+		expected.removeIf(x -> x % 7 == 0);
+		for(Iterator<Integer> it = minHeap.iterator(); it.hasNext();) {
+			if(it.next() % 5 == 0) {
+				it.remove();
+			}
+		}
+		expected.removeIf(x -> x % 5 == 0);
+		Integer top = minHeap.replaceTop(1);
+		Assert.assertTrue(expected.remove(top));
+		expected.add(1);
+		Assert.assertTrue(minHeap.contains(1));
+		MinHeap<Integer> copy = new MinHeap<Integer>(minHeap);
+		Assert.assertTrue(copy.isIndexed());
+		Collections.sort(expected);
+		for(Integer e : expected) {
+			Assert.assertTrue(copy.contains(e));
+			Assert.assertEquals(e, minHeap.poll());
+			Assert.assertTrue(copy.remove(e));
+		}
+		Assert.assertTrue(minHeap.isEmpty());
+		Assert.assertTrue(copy.isEmpty());
+		Assert.assertFalse(copy.contains(1));
+	}
+
+	@Test
+	public void testStats() throws Exception {
+		MinHeap<Integer> minHeap = new MinHeap<Integer>(1);
+		HeapStats stats = minHeap.enableStats();
+		stats.setSlowOperationThresholdNanos(0);
+		/* descending input percolates every offer to the root */
+		for(int i = 1023; i >= 0; i--) {
+			minHeap.offer(i);
+		}
+		Assert.assertEquals(10, stats.getMaxSiftDepth());
+		Assert.assertTrue(stats.getResizes() > 0);
+		/* the first offer lands at the root without a sift */
+		Assert.assertEquals(1023, stats.getSifts());
+		Assert.assertEquals(stats.getSiftLevels(), stats.getComparisons());
+		Assert.assertEquals(1024, stats.getSlowOperations());
+		minHeap.poll();
+		Assert.assertTrue(stats.getComparisons() > stats.getSiftLevels());
+		ObjectName name = stats.register("testStats");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			Assert.assertEquals(stats.getSifts(), server.getAttribute(name, "Sifts"));
+			server.invoke(name, "reset", null, null);
+			Assert.assertEquals(0L, stats.getComparisons());
+		} finally {
+			stats.unregister();
+		}
+		minHeap.disableStats();
+		minHeap.poll();
+		Assert.assertNull(minHeap.stats());
+		Assert.assertEquals(0L, stats.getSifts());
+	}
+
+	@Test
+	public void testBatchDrain() {
+		Random random = new Random(21);
+		MinHeap<Integer> minHeap = new MinHeap<Integer>(1, null, MinHeap.QUATERNARY, true);
+		List<Integer> expected = new ArrayList<Integer>();
+		for(int i = 0; i < 1000; i++) {
+			int next = random.nextInt(500);
+			minHeap.offer(next);
+			expected.add(next);
+		}
+		Collections.sort(expected);
+		Integer [] batch = new Integer[10];
+		Assert.assertEquals(10, minHeap.pollN(50, batch));
+		Assert.assertEquals(expected.subList(0, 10), Arrays.asList(batch));
+		List<Integer> drained = new ArrayList<Integer>();
+		Assert.assertEquals(90, minHeap.drainTo(drained, 90));
+		Assert.assertEquals(expected.subList(10, 100), drained);
+		Assert.assertEquals(expected.subList(100, 1000), minHeap.drainSorted());
+		Assert.assertTrue(minHeap.isEmpty());
+		/* the heap is still usable after handing its array over */
+		minHeap.offer(3);
+		minHeap.offer(1);
+		Assert.assertTrue(minHeap.contains(3));
+		Assert.assertEquals(Arrays.asList(1, 3), minHeap.drainSorted());
+		Assert.assertEquals(0, minHeap.pollN(5, batch));
+	}
+
+	@Test
+	public void testOrderedIteration() {
+		Random random = new Random(22);
+		MinHeap<Integer> minHeap = new MinHeap<Integer>(1, Collections.reverseOrder(), MinHeap.OCTONARY);
+		List<Integer> expected = new ArrayList<Integer>();
+		long sum = 0;
+		for(int i = 0; i < 20000; i++) {
+			int next = random.nextInt(100000);
+			minHeap.offer(next);
+			expected.add(next);
+			sum += next;
+		}
+		Collections.sort(expected, Collections.reverseOrder());
+		Iterator<Integer> it = minHeap.orderedIterator();
+		for(int i = 0; i < 100; i++) {
+			Assert.assertEquals(expected.get(i), it.next());
+		}
+		List<Integer> ordered = new ArrayList<Integer>();
+		for(it = minHeap.orderedIterator(); it.hasNext();) {
+			ordered.add(it.next());
+		}
+		Assert.assertEquals(expected, ordered);
+		Assert.assertEquals(20000, minHeap.size());
+		Assert.assertEquals(sum, minHeap.stream().parallel().mapToLong(Integer::longValue).sum());
+		Assert.assertEquals(20000, minHeap.stream().parallel().count());
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void testOrderedIteratorFailsFast() {
+		MinHeap<Integer> minHeap = new MinHeap<Integer>(Arrays.asList(3, 1, 2));
+		Iterator<Integer> it = minHeap.orderedIterator();
+		it.next();
+		minHeap.offer(0);
+		it.next();
+	}
+
+	@Test
+	public void testStableOrdering() {
+		Random random = new Random(24);
+		/* {priority, insertion number}, ordered on the priority alone */
+		Comparator<int[]> byPriority = new Comparator<int[]>() {
+			@Override
+			public int compare(int[] a, int[] b) {
+				return Integer.compare(a[0], b[0]);
+			}
+		};
+		Comparator<int[]> fifo = new Comparator<int[]>() {
+			@Override
+			public int compare(int[] a, int[] b) {
+				return a[0]!=b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]);
+			}
+		};
+		MinHeap<int[]> minHeap = new MinHeap<int[]>(4, byPriority, MinHeap.QUATERNARY, false, true);
+		Assert.assertTrue(minHeap.isStable());
+		List<int[]> expected = new ArrayList<int[]>();
+		for(int i = 0; i < 5000; i++) {
+			int[] next = new int[] {random.nextInt(20), i};
+			minHeap.offer(next);
+			expected.add(next);
+		}
+		minHeap.removeIf(e -> e[1] % 7 == 0);
+		expected.removeIf(e -> e[1] % 7 == 0);
+		Assert.assertTrue(minHeap.remove(expected.remove(1234)));
+		Collections.sort(expected, fifo);
+		int[] top = new int[] {-1, 5000};
+		Assert.assertSame(expected.get(0), minHeap.replaceTop(top));
+		expected.set(0, top);
+		MinHeap<int[]> copy = new MinHeap<int[]>(minHeap);
+		Assert.assertTrue(copy.isStable());
+		for(int[] e : expected) {
+			Assert.assertSame(e, minHeap.poll());
+		}
+		Assert.assertEquals(expected, copy.drainSorted());
+	}
 }
@@ -0,0 +1,120 @@
+package com.beardfish.heap.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.beardfish.heap.MinMaxHeap;
+
+public class MinMaxHeapTest {
+
+	@Test
+	public void testBothEnds() {
+		Random random = new Random(23);
+		MinMaxHeap<Integer> heap = new MinMaxHeap<Integer>();
+		List<Integer> expected = new ArrayList<Integer>();
+		for(int i = 0; i < 5000; i++) {
+			int next = random.nextInt(1000);
+			heap.offer(next);
+			expected.add(next);
+		}
+		Collections.sort(expected);
+		/* drain from alternating ends, interleaved with offers and removals */
+		while(!expected.isEmpty()) {
+			Assert.assertEquals(expected.get(0), heap.peekMin());
+			Assert.assertEquals(expected.get(expected.size()-1), heap.peekMax());
+			int choice = random.nextInt(4);
+			if(choice==0) {
+				Assert.assertEquals(expected.remove(0), heap.pollMin());
+			} else if(choice==1) {
+				Assert.assertEquals(expected.remove(expected.size()-1), heap.pollMax());
+			} else if(choice==2) {
+				Integer victim = expected.remove(random.nextInt(expected.size()));
+				Assert.assertTrue(heap.remove(victim));
+			} else if(random.nextBoolean()) {
+				int next = random.nextInt(1000);
+				heap.offer(next);
+				int at = Collections.binarySearch(expected, next);
+				expected.add(at < 0 ? -at - 1 : at, next);
+			} else {
+				Assert.assertEquals(expected.remove(0), heap.poll());
+			}
+			Assert.assertEquals(expected.size(), heap.size());
+		}
+		Assert.assertNull(heap.pollMin());
+		Assert.assertNull(heap.pollMax());
+		Assert.assertNull(heap.peekMax());
+	}
+
+	@Test
+	public void testFromCollection() {
+		Random random = new Random(24);
+		List<Integer> expected = new ArrayList<Integer>();
+		for(int i = 0; i < 1000; i++) {
+			expected.add(random.nextInt());
+		}
+		MinMaxHeap<Integer> heap = new MinMaxHeap<Integer>(expected);
+		Collections.sort(expected);
+		for(int i = 0, j = expected.size()-1; i <= j; i++, j--) {
+			Assert.assertEquals(expected.get(j), heap.pollMax());
+			if(i < j) {
+				Assert.assertEquals(expected.get(i), heap.pollMin());
+			}
+		}
+		Assert.assertTrue(heap.isEmpty());
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		Random random = new Random(24);
+		for(int round = 0; round < 200; round++) {
+			MinMaxHeap<Integer> heap = new MinMaxHeap<Integer>();
+			List<Integer> all = new ArrayList<Integer>();
+			for(int i = 0; i < 300; i++) {
+				/* small values are cached, so the heap holds the same object many times */
+				int next = round % 2 == 0 ? random.nextInt(100) : random.nextInt(100000);
+				heap.offer(next);
+				all.add(next);
+			}
+			List<Integer> iterated = new ArrayList<Integer>();
+			List<Integer> kept = new ArrayList<Integer>();
+			for(Iterator<Integer> it = heap.iterator(); it.hasNext();) {
+				Integer e = it.next();
+				iterated.add(e);
+				if(random.nextInt(1 + round % 4)==0) {
+					it.remove();
+				} else {
+					kept.add(e);
+				}
+			}
+			Collections.sort(all);
+			Collections.sort(iterated);
+			Assert.assertEquals(all, iterated);
+			Assert.assertEquals(kept.size(), heap.size());
+			Collections.sort(kept);
+			for(int i = 0; i < kept.size(); i++) {
+				Assert.assertEquals(kept.get(kept.size() - 1 - i), heap.pollMax());
+			}
+			Assert.assertTrue(heap.isEmpty());
+		}
+	}
+
+	@Test
+	public void testRemoveIf() {
+		MinMaxHeap<Integer> heap = new MinMaxHeap<Integer>();
+		for(int i = 0; i < 100; i++) {
+			heap.offer(i);
+		}
+		Assert.assertTrue(heap.removeIf(e -> e % 3 != 0));
+		Assert.assertEquals(34, heap.size());
+		for(int i = 0; i < 100; i += 3) {
+			Assert.assertEquals(Integer.valueOf(i), heap.poll());
+		}
+		Assert.assertTrue(heap.isEmpty());
+	}
+}
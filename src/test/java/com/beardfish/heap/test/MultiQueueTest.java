@@ -0,0 +1,122 @@
+package com.beardfish.heap.test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.beardfish.heap.MultiQueue;
+
+public class MultiQueueTest {
+
+	@Test
+	public void testSingleShardIsExact() {
+		Random random = new Random(7);
+		MultiQueue<Integer> queue = new MultiQueue<Integer>(1);
+		List<Integer> expected = new ArrayList<Integer>();
+		for(int i = 0; i < 1000; i++) {
+			int next = random.nextInt(100);
+			queue.offer(next);
+			expected.add(next);
+		}
+		Collections.sort(expected);
+		for(Integer e : expected) {
+			Assert.assertEquals(e, queue.poll());
+		}
+		Assert.assertNull(queue.poll());
+	}
+
+	@Test
+	public void testRelaxedOrder() {
+		int shards = 8;
+		MultiQueue<Integer> queue = new MultiQueue<Integer>(shards);
+		List<Integer> numbers = new ArrayList<Integer>();
+		for(int i = 0; i < 10000; i++) {
+			numbers.add(i);
+		}
+		Collections.shuffle(numbers, new Random(7));
+		queue.addAll(numbers);
+		Assert.assertEquals(10000, queue.size());
+		Assert.assertEquals(Integer.valueOf(0), queue.peek());
+		TreeSet<Integer> remaining = new TreeSet<Integer>(numbers);
+		long rankSum = 0;
+		Integer e;
+		while((e = queue.poll())!=null) {
+			Assert.assertTrue("polled twice: " + e, remaining.contains(e));
+			/* 0 for the true minimum */
+			rankSum += remaining.headSet(e).size();
+			remaining.remove(e);
+		}
+		Assert.assertTrue(remaining.isEmpty());
+		Assert.assertTrue(queue.isEmpty());
+		/* the expected rank is O(shards), allow a generous constant */
+		Assert.assertTrue("mean rank " + rankSum / 10000.0, rankSum < 4L * shards * 10000);
+	}
+
+	@Test
+	public void testIteratorRemovesByIdentity() {
+		MultiQueue<String> queue = new MultiQueue<String>(4);
+		String first = new String("equal");
+		String second = new String("equal");
+		queue.offer(first);
+		queue.offer(second);
+		for(Iterator<String> it = queue.iterator(); it.hasNext();) {
+			if(it.next()==second) {
+				it.remove();
+			}
+		}
+		Assert.assertEquals(1, queue.size());
+		Assert.assertSame(first, queue.poll());
+	}
+
+	@Test(timeout = 60000)
+	public void testConcurrentOfferPoll() throws InterruptedException {
+		final MultiQueue<Integer> queue = new MultiQueue<Integer>(4);
+		final int threads = 8;
+		final int perThread = 50000;
+		final ConcurrentLinkedQueue<Integer> polled = new ConcurrentLinkedQueue<Integer>();
+		Thread [] workers = new Thread[threads];
+		for(int t = 0; t < threads; t++) {
+			final int base = t * perThread;
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					for(int i = 0; i < perThread; i++) {
+						queue.offer(base + i);
+						if(i % 2 == 1) {
+							Integer e = queue.poll();
+							if(e!=null) {
+								polled.add(e);
+							}
+						}
+					}
+				}
+			};
+		}
+		for(Thread worker : workers) {
+			worker.start();
+		}
+		for(Thread worker : workers) {
+			worker.join();
+		}
+		Integer e;
+		while((e = queue.poll())!=null) {
+			polled.add(e);
+		}
+		int total = threads * perThread;
+		Assert.assertEquals(total, polled.size());
+		BitSet seen = new BitSet(total);
+		for(Integer p : polled) {
+			Assert.assertFalse("polled twice: " + p, seen.get(p));
+			seen.set(p);
+		}
+		Assert.assertEquals(total, seen.cardinality());
+	}
+}
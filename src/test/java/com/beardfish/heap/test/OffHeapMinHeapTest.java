@@ -0,0 +1,86 @@
+package com.beardfish.heap.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.beardfish.heap.MinHeap;
+import com.beardfish.heap.OffHeapMinHeap;
+
+public class OffHeapMinHeapTest {
+
+	@Test
+	public void testKeyPayloadPairs() {
+		Random random = new Random(11);
+		OffHeapMinHeap minHeap = new OffHeapMinHeap(8, 1, MinHeap.QUATERNARY);
+		long [] keys = new long[5000];
+		for(int i = 0; i < keys.length; i++) {
+			keys[i] = random.nextLong();
+			/* the payload is the negated key so it can be checked on the way out */
+			minHeap.offer(keys[i], -keys[i]);
+		}
+		Arrays.sort(keys);
+		for(int i = 0; i < keys.length; i++) {
+			Assert.assertEquals(keys[i], minHeap.peekKey());
+			Assert.assertEquals(-keys[i], minHeap.pollPayload());
+		}
+		Assert.assertTrue(minHeap.isEmpty());
+	}
+
+	@Test
+	public void testWidePayload() {
+		OffHeapMinHeap minHeap = new OffHeapMinHeap(13);
+		minHeap.offer(3, "three".getBytes());
+		minHeap.offer(1, "one".getBytes());
+		minHeap.offer(2, "two".getBytes());
+		byte [] payload = new byte[13];
+		Assert.assertEquals(1, minHeap.poll(payload));
+		Assert.assertEquals("one", new String(payload, 0, 3));
+		Assert.assertEquals(0, payload[3]);
+		Assert.assertEquals(2, minHeap.poll(null));
+		Assert.assertEquals(3, minHeap.poll(payload));
+		Assert.assertEquals("three", new String(payload, 0, 5));
+	}
+
+	@Test
+	public void testCapacityGrowsFromInitialCapacity() {
+		/* a 24 byte record, a full chunk would be 24 MiB */
+		OffHeapMinHeap minHeap = new OffHeapMinHeap(13);
+		Assert.assertEquals(12, minHeap.capacity());
+		for(int i = 0; i < 13; i++) {
+			minHeap.offer(i, new byte[0]);
+		}
+		Assert.assertEquals(24, minHeap.capacity());
+		for(int i = 13; i < 5000; i++) {
+			minHeap.offer(i, new byte[0]);
+		}
+		Assert.assertEquals(6144, minHeap.capacity());
+		for(int i = 0; i < 5000; i++) {
+			Assert.assertEquals(i, minHeap.poll(null));
+		}
+		minHeap.release();
+		Assert.assertEquals(0, minHeap.capacity());
+	}
+
+	@Test
+	public void testNarrowPayloadHasNoLong() {
+		OffHeapMinHeap minHeap = new OffHeapMinHeap(4);
+		minHeap.offer(1, new byte[] {1, 2, 3, 4});
+		try {
+			minHeap.peekPayload();
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			/* only 4 payload bytes */
+		}
+		try {
+			minHeap.pollPayload();
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			/* the head stays */
+		}
+		Assert.assertEquals(1, minHeap.size());
+		Assert.assertEquals(1, minHeap.poll(null));
+	}
+}
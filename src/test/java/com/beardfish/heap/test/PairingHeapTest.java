@@ -0,0 +1,182 @@
+package com.beardfish.heap.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.beardfish.heap.PairingHeap;
+
+public class PairingHeapTest {
+
+	@Test
+	public void testOfferPoll() {
+		Random random = new Random(16);
+		PairingHeap<Integer> heap = new PairingHeap<Integer>();
+		List<Integer> expected = new ArrayList<Integer>();
+		for(int i = 0; i < 5000; i++) {
+			int next = random.nextInt(1000);
+			heap.offer(next);
+			expected.add(next);
+		}
+		Assert.assertEquals(expected.size(), heap.size());
+		int iterated = 0;
+		for(Integer e : heap) {
+			iterated++;
+		}
+		Assert.assertEquals(expected.size(), iterated);
+		Collections.sort(expected);
+		for(Integer e : expected) {
+			Assert.assertEquals(e, heap.poll());
+		}
+		Assert.assertNull(heap.poll());
+	}
+
+	@Test
+	public void testHandles() {
+		Random random = new Random(17);
+		PairingHeap<Integer> heap = new PairingHeap<Integer>(null, 16);
+		List<PairingHeap.Node<Integer>> nodes = new ArrayList<PairingHeap.Node<Integer>>();
+		for(int i = 0; i < 2000; i++) {
+			nodes.add(heap.insert(random.nextInt(100000)));
+		}
+		List<Integer> expected = new ArrayList<Integer>();
+		for(int i = 0; i < nodes.size(); i++) {
+			PairingHeap.Node<Integer> node = nodes.get(i);
+			if(i % 3 == 0) {
+				heap.decreaseKey(node, node.element() - random.nextInt(100000));
+				expected.add(node.element());
+			} else if(i % 3 == 1) {
+				heap.remove(node);
+			} else {
+				expected.add(node.element());
+			}
+		}
+		Collections.sort(expected);
+		for(Integer e : expected) {
+			Assert.assertEquals(e, heap.poll());
+		}
+		Assert.assertTrue(heap.isEmpty());
+	}
+
+	@Test
+	public void testMeld() {
+		PairingHeap<Integer> a = new PairingHeap<Integer>();
+		PairingHeap<Integer> b = new PairingHeap<Integer>();
+		for(int i = 0; i < 100; i++) {
+			(i % 2 == 0 ? a : b).offer(i);
+		}
+		PairingHeap.Node<Integer> node = b.insert(500);
+		a.meld(b);
+		Assert.assertTrue(b.isEmpty());
+		Assert.assertEquals(101, a.size());
+		a.decreaseKey(node, -1);
+		Assert.assertEquals(Integer.valueOf(-1), a.poll());
+		for(int i = 0; i < 100; i++) {
+			Assert.assertEquals(Integer.valueOf(i), a.poll());
+		}
+	}
+
+	@Test
+	public void testStaleHandlesRejected() {
+		PairingHeap<Integer> heap = new PairingHeap<Integer>();
+		PairingHeap<Integer> other = new PairingHeap<Integer>();
+		PairingHeap.Node<Integer> removed = heap.insert(5);
+		heap.remove(removed);
+		/* a stale handle is never handed out again */
+		PairingHeap.Node<Integer> live = heap.insert(7);
+		Assert.assertNotSame(removed, live);
+		try {
+			heap.decreaseKey(removed, 1);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			/* left the heap */
+		}
+		PairingHeap.Node<Integer> foreign = other.insert(3);
+		try {
+			heap.remove(foreign);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			/* belongs to other */
+		}
+		heap.meld(other);
+		Assert.assertEquals(Integer.valueOf(3), heap.remove(foreign));
+		PairingHeap.Node<Integer> cleared = heap.insert(9);
+		heap.clear();
+		try {
+			heap.remove(cleared);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			/* dropped by clear */
+		}
+		Assert.assertTrue(heap.isEmpty());
+		Assert.assertTrue(other.isEmpty());
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		Random random = new Random(18);
+		for(int round = 0; round < 50; round++) {
+			PairingHeap<Integer> heap = new PairingHeap<Integer>();
+			List<Integer> all = new ArrayList<Integer>();
+			for(int i = 0; i < 500; i++) {
+				int next = random.nextInt(1000);
+				heap.offer(next);
+				all.add(next);
+				/* polls give the tree some depth */
+				if(i % 7 == 0) {
+					all.remove(heap.poll());
+				}
+			}
+			List<Integer> iterated = new ArrayList<Integer>();
+			List<Integer> kept = new ArrayList<Integer>();
+			for(Iterator<Integer> it = heap.iterator(); it.hasNext();) {
+				Integer e = it.next();
+				iterated.add(e);
+				if(random.nextInt(3)==0) {
+					it.remove();
+				} else {
+					kept.add(e);
+				}
+			}
+			Collections.sort(all);
+			Collections.sort(iterated);
+			Assert.assertEquals(all, iterated);
+			Assert.assertEquals(kept.size(), heap.size());
+			Collections.sort(kept);
+			for(Integer e : kept) {
+				Assert.assertEquals(e, heap.poll());
+			}
+			Assert.assertTrue(heap.isEmpty());
+		}
+	}
+
+	@Test
+	public void testRemoveObject() {
+		PairingHeap<Integer> heap = new PairingHeap<Integer>();
+		for(int i = 0; i < 100; i++) {
+			heap.offer(i);
+		}
+		heap.poll();
+		Assert.assertTrue(heap.remove(Integer.valueOf(50)));
+		Assert.assertFalse(heap.remove(Integer.valueOf(50)));
+		Assert.assertTrue(heap.removeIf(e -> e % 2 == 1));
+		Assert.assertEquals(48, heap.size());
+		for(int i = 2; i < 100; i += 2) {
+			if(i!=50) {
+				Assert.assertEquals(Integer.valueOf(i), heap.poll());
+			}
+		}
+		Assert.assertTrue(heap.isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIncreaseKeyRejected() {
+		PairingHeap<Integer> heap = new PairingHeap<Integer>();
+		heap.decreaseKey(heap.insert(1), 2);
+	}
+}
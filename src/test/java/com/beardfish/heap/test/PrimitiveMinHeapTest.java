@@ -0,0 +1,149 @@
+package com.beardfish.heap.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.beardfish.heap.DoubleKeyMinHeap;
+import com.beardfish.heap.DoubleMinHeap;
+import com.beardfish.heap.IntMinHeap;
+import com.beardfish.heap.LongKeyMinHeap;
+import com.beardfish.heap.LongMinHeap;
+import com.beardfish.heap.MinHeap;
+
+public class PrimitiveMinHeapTest {
+
+	@Test
+	public void testIntMinHeapPollOrder() {
+		IntMinHeap minHeap = new IntMinHeap(1);
+		int [] numbers = {100,19,36,17,3,25,1,2,7};
+		for(int i = 0; i <numbers.length; i++) {
+			minHeap.offer(numbers[i]);
+		}
+		Assert.assertEquals(1, minHeap.peekInt());
+		int [] expected = {1,2,3,7,17,19,25,36,100};
+		for(int i = 0; i <expected.length; i++) {
+			Assert.assertEquals(expected[i], minHeap.pollInt());
+		}
+		Assert.assertTrue(minHeap.isEmpty());
+	}
+
+	@Test
+	public void testLongMinHeapPollOrder() {
+		LongMinHeap minHeap = new LongMinHeap();
+		long [] numbers = {Long.MAX_VALUE,19,-36,17,3,25,Long.MIN_VALUE,2,7};
+		for(int i = 0; i <numbers.length; i++) {
+			minHeap.offer(numbers[i]);
+		}
+		long [] expected = {Long.MIN_VALUE,-36,2,3,7,17,19,25,Long.MAX_VALUE};
+		for(int i = 0; i <expected.length; i++) {
+			Assert.assertEquals(expected[i], minHeap.pollLong());
+		}
+	}
+
+	@Test
+	public void testDoubleMinHeapPollOrder() {
+		DoubleMinHeap minHeap = new DoubleMinHeap();
+		double [] numbers = {1.5,-0.25,3.0,0.0,2.75};
+		for(int i = 0; i <numbers.length; i++) {
+			minHeap.offer(numbers[i]);
+		}
+		double [] expected = {-0.25,0.0,1.5,2.75,3.0};
+		for(int i = 0; i <expected.length; i++) {
+			Assert.assertEquals(expected[i], minHeap.pollDouble(), 0.0);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDoubleMinHeapRejectsNaN() {
+		new DoubleMinHeap().offer(Double.NaN);
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testEmptyPoll() {
+		new LongMinHeap().pollLong();
+	}
+
+	@Test
+	public void testLongKeyMinHeap() {
+		Random random = new Random(25);
+		LongKeyMinHeap<long[]> minHeap = new LongKeyMinHeap<long[]>(1, e -> e[0], MinHeap.QUATERNARY);
+		List<long[]> expected = new ArrayList<long[]>();
+		for(int i = 0; i < 5000; i++) {
+			long[] next = new long[] {random.nextLong()};
+			minHeap.offer(next);
+			expected.add(next);
+		}
+		Assert.assertTrue(minHeap.remove(expected.remove(2500)));
+		Collections.sort(expected, (a, b) -> Long.compare(a[0], b[0]));
+		for(long[] e : expected) {
+			Assert.assertEquals(e[0], minHeap.peekKey());
+			Assert.assertSame(e, minHeap.poll());
+		}
+		Assert.assertNull(minHeap.poll());
+	}
+
+	@Test
+	public void testDoubleKeyMinHeap() {
+		DoubleKeyMinHeap<String> minHeap = new DoubleKeyMinHeap<String>(Double::parseDouble);
+		String [] numbers = {"1.5","-0.25","3.0","0.0","2.75","-Infinity","-0.0","-1e300","Infinity"};
+		for(int i = 0; i <numbers.length; i++) {
+			minHeap.offer(numbers[i]);
+		}
+		String [] expected = {"-Infinity","-1e300","-0.25","-0.0","0.0","1.5","2.75","3.0","Infinity"};
+		for(int i = 0; i <expected.length; i++) {
+			Assert.assertEquals(Double.doubleToLongBits(Double.parseDouble(expected[i])), Double.doubleToLongBits(minHeap.peekKey()));
+			Assert.assertEquals(expected[i], minHeap.poll());
+		}
+	}
+
+	@Test
+	public void testKeyMinHeapIteratorRemove() {
+		Random random = new Random(26);
+		for(int round = 0; round < 100; round++) {
+			LongKeyMinHeap<long[]> minHeap = new LongKeyMinHeap<long[]>(1, e -> e[0], round % 2 == 0 ? MinHeap.BINARY : MinHeap.QUATERNARY);
+			List<long[]> kept = new ArrayList<long[]>();
+			for(int i = 0; i < 300; i++) {
+				minHeap.offer(new long[] {random.nextInt(1000)});
+			}
+			int iterated = 0;
+			for(Iterator<long[]> it = minHeap.iterator(); it.hasNext();) {
+				long[] e = it.next();
+				iterated++;
+				if(random.nextBoolean()) {
+					it.remove();
+				} else {
+					kept.add(e);
+				}
+			}
+			Assert.assertEquals(300, iterated);
+			Assert.assertEquals(kept.size(), minHeap.size());
+			Collections.sort(kept, (a, b) -> Long.compare(a[0], b[0]));
+			for(long[] e : kept) {
+				Assert.assertEquals(e[0], minHeap.poll()[0]);
+			}
+			Assert.assertNull(minHeap.poll());
+		}
+		DoubleKeyMinHeap<Double> doubles = new DoubleKeyMinHeap<Double>(Double::doubleValue);
+		for(int i = 0; i < 100; i++) {
+			doubles.offer(i / 4.0);
+		}
+		Assert.assertTrue(doubles.removeIf(d -> d != Math.floor(d)));
+		Assert.assertEquals(25, doubles.size());
+		for(int i = 0; i < 25; i++) {
+			Assert.assertEquals(i, doubles.poll(), 0.0);
+		}
+		Assert.assertTrue(doubles.isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDoubleKeyMinHeapRejectsNaN() {
+		new DoubleKeyMinHeap<String>(Double::parseDouble).offer("NaN");
+	}
+}
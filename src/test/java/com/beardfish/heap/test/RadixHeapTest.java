@@ -0,0 +1,50 @@
+package com.beardfish.heap.test;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.beardfish.heap.LongMinHeap;
+import com.beardfish.heap.RadixHeap;
+
+public class RadixHeapTest {
+
+	@Test
+	public void testMonotoneWorkload() {
+		Random random = new Random(17);
+		RadixHeap radixHeap = new RadixHeap(-1000);
+		LongMinHeap reference = new LongMinHeap();
+		for(int i = 0; i < 100; i++) {
+			long key = -1000 + random.nextInt(2000);
+			radixHeap.offer(key, ~key);
+			reference.offer(key);
+		}
+		/* like a shortest path search: every new key is the polled key plus an edge weight */
+		for(int i = 0; i < 20000 && !reference.isEmpty(); i++) {
+			long expected = reference.pollLong();
+			Assert.assertEquals(expected, radixHeap.peekKey());
+			Assert.assertEquals(~expected, radixHeap.pollPayload());
+			int fanout = i < 10000 ? 2 : 0;
+			for(int j = 0; j < fanout; j++) {
+				long key = expected + random.nextInt(j==0 ? 100 : 1 << 20);
+				radixHeap.offer(key, ~key);
+				reference.offer(key);
+			}
+		}
+		Assert.assertEquals(reference.size(), radixHeap.size());
+		while(!reference.isEmpty()) {
+			Assert.assertEquals(reference.pollLong(), radixHeap.pollKey());
+		}
+		Assert.assertTrue(radixHeap.isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testKeyBelowMinimum() {
+		RadixHeap radixHeap = new RadixHeap();
+		radixHeap.offer(10, 0);
+		radixHeap.offer(20, 0);
+		Assert.assertEquals(10, radixHeap.pollKey());
+		radixHeap.offer(9, 0);
+	}
+}
@@ -0,0 +1,103 @@
+package com.beardfish.heap.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.beardfish.heap.MinHeap;
+import com.beardfish.heap.TimerHeap;
+
+public class TimerHeapTest {
+
+	@Test
+	public void testExpiryOrder() {
+		TimerHeap<String> timer = new TimerHeap<String>();
+		timer.schedule(30, "c");
+		timer.schedule(10, "a");
+		timer.schedule(20, "b1");
+		timer.schedule(20, "b2");
+		Assert.assertEquals(10, timer.nextDeadline());
+		Assert.assertNull(timer.pollExpired(5));
+		Assert.assertEquals("a", timer.pollExpired(20));
+		Assert.assertEquals("b1", timer.pollExpired(20));
+		Assert.assertEquals("b2", timer.pollExpired(20));
+		Assert.assertNull(timer.pollExpired(20));
+		Assert.assertEquals("c", timer.pollExpired(100));
+		Assert.assertTrue(timer.isEmpty());
+		Assert.assertEquals(Long.MAX_VALUE, timer.nextDeadline());
+	}
+
+	@Test
+	public void testCancellation() {
+		Random random = new Random(14);
+		TimerHeap<Integer> timer = new TimerHeap<Integer>(MinHeap.BINARY, 0.25);
+		List<TimerHeap.Timeout<Integer>> timeouts = new ArrayList<TimerHeap.Timeout<Integer>>();
+		for(int i = 0; i < 10000; i++) {
+			timeouts.add(timer.schedule(random.nextInt(1000), i));
+		}
+		int live = 0;
+		for(TimerHeap.Timeout<Integer> timeout : timeouts) {
+			if(timeout.task() % 3 != 0) {
+				Assert.assertTrue(timeout.cancel());
+				Assert.assertFalse(timeout.cancel());
+			} else {
+				live++;
+			}
+		}
+		Assert.assertEquals(live, timer.size());
+		/* the next schedule compacts the heap */
+		timer.schedule(2000, -1);
+		Assert.assertEquals(0, timer.tombstones());
+		long last = Long.MIN_VALUE;
+		Integer task;
+		int expired = 0;
+		while((task = timer.pollExpired(1000))!=null) {
+			TimerHeap.Timeout<Integer> timeout = timeouts.get(task);
+			Assert.assertEquals(0, task % 3);
+			Assert.assertTrue(timeout.isExpired());
+			Assert.assertFalse(timeout.cancel());
+			Assert.assertTrue(timeout.deadline() >= last);
+			last = timeout.deadline();
+			expired++;
+		}
+		Assert.assertEquals(live, expired);
+		Assert.assertEquals(1, timer.size());
+	}
+
+	@Test(timeout = 60000)
+	public void testClearRacesCancel() throws InterruptedException {
+		final TimerHeap<Integer> timer = new TimerHeap<Integer>(MinHeap.BINARY, 1.0);
+		final ConcurrentLinkedQueue<TimerHeap.Timeout<Integer>> scheduled = new ConcurrentLinkedQueue<TimerHeap.Timeout<Integer>>();
+		final AtomicBoolean done = new AtomicBoolean();
+		Thread canceller = new Thread() {
+			@Override
+			public void run() {
+				while(!done.get() || !scheduled.isEmpty()) {
+					TimerHeap.Timeout<Integer> timeout = scheduled.poll();
+					if(timeout!=null) {
+						timeout.cancel();
+					}
+				}
+			}
+		};
+		canceller.start();
+		for(int i = 0; i < 200000; i++) {
+			scheduled.add(timer.schedule(i, i));
+			if(i % 4 == 0) {
+				timer.clear();
+			}
+		}
+		done.set(true);
+		canceller.join();
+		timer.clear();
+		/* every cancel that lost the race to clear must have been subtracted */
+		timer.schedule(0, -1);
+		Assert.assertEquals(1, timer.size());
+		Assert.assertEquals(0, timer.tombstones());
+	}
+}